@@ -0,0 +1,125 @@
+package org.dbuniproject.api.benchmarks;
+
+import org.dbuniproject.api.db.structures.ProductSale;
+import org.dbuniproject.api.db.structures.Region;
+import org.dbuniproject.api.db.structures.Sale;
+import org.dbuniproject.api.json.JSONMapper;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SerializationBenchmark {
+    // Chile has 16 regions and 346 communes, which is what /regions serves
+    private static final int REGIONS = 16;
+    private static final int COMMUNES = 346;
+
+    private static final JSONMapper JSON_MAPPER = new JSONMapper();
+
+    @Param({"10000"})
+    public int productRows;
+
+    @Param({"50"})
+    public int saleLines;
+
+    private List<JSONObject> products;
+    private Sale sale;
+    private List<Region> regions;
+
+    @Setup
+    public void setup() {
+        final Random random = new Random(42);
+
+        this.products = new ArrayList<>(this.productRows);
+        for (int i = 0; i < this.productRows; i++) {
+            this.products.add(new JSONObject()
+                    .put("sku", 100_000L + i)
+                    .put("name", "Polera manga corta modelo " + i)
+                    .put("brand", "Marca " + random.nextInt(40))
+                    .put("color", String.format("#%06x", random.nextInt(0x1000000)))
+                    .put("price", 1_990 + random.nextInt(50_000))
+                    .put("available", random.nextBoolean())
+            );
+        }
+
+        final ArrayList<ProductSale> lines = new ArrayList<>(this.saleLines);
+        for (int i = 0; i < this.saleLines; i++) {
+            lines.add(new ProductSale(100_000L + random.nextInt(this.productRows), 1 + random.nextInt(5)));
+        }
+        this.sale = new Sale(1, new Date(), "12345678-5", "98765432-1", Sale.Type.RECEIPT, 1_234_567, lines);
+
+        this.regions = new ArrayList<>(REGIONS);
+        for (short number = 1; number <= REGIONS; number++) {
+            this.regions.add(new Region(number, "Región " + number, new ArrayList<>()));
+        }
+        for (short id = 1; id <= COMMUNES; id++) {
+            this.regions.get(id % REGIONS).addCommune(id, "Comuna " + id);
+        }
+    }
+
+    @Benchmark
+    public String productsToJsonString() {
+        return JSON_MAPPER.toJsonString(this.products, List.class);
+    }
+
+    @Benchmark
+    public int productsToOutputStream() {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream(1 << 20);
+        JSON_MAPPER.writeToOutputStream(this.products.stream(), output);
+        return output.size();
+    }
+
+    @Benchmark
+    public String saleToJSON() {
+        return this.sale.toJSON().toString();
+    }
+
+    @Benchmark
+    public String regionsToJSON() {
+        return JSON_MAPPER.toJsonString(this.regions, List.class);
+    }
+
+    @Benchmark
+    public long regionsToOutputStream() {
+        final CountingOutputStream output = new CountingOutputStream();
+        JSON_MAPPER.writeToOutputStream(this.regions.stream(), output);
+        return output.count;
+    }
+
+    // Keeps buffer growth out of the measurement
+    private static class CountingOutputStream extends OutputStream {
+        private long count;
+
+        @Override
+        public void write(int b) {
+            this.count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            this.count += len;
+        }
+    }
+}
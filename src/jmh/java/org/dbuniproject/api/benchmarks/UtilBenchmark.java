@@ -0,0 +1,76 @@
+package org.dbuniproject.api.benchmarks;
+
+import org.dbuniproject.api.Util;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class UtilBenchmark {
+    private static final int SAMPLES = 1024;
+
+    private final String[] ruts = new String[SAMPLES];
+    private final int[] colors = new int[SAMPLES];
+    private final String password = Util.generatePassword();
+    private final String salt = Util.generateSalt();
+    private int index;
+
+    @Setup
+    public void setup() {
+        final Random random = new Random(42);
+
+        // Half valid and half with a wrong verification digit, like a mix of typed and scanned input
+        for (int i = 0; i < SAMPLES; i++) {
+            final int digits = 5_000_000 + random.nextInt(25_000_000);
+            final String rut = digits + "-" + verificationDigit(digits);
+            this.ruts[i] = i % 2 == 0 ? rut : rut.substring(0, rut.length() - 1) + "0";
+            this.colors[i] = random.nextInt(0x1000000);
+        }
+    }
+
+    @Benchmark
+    public boolean isValidRut() {
+        return Util.isValidRut(this.ruts[this.next()]);
+    }
+
+    @Benchmark
+    public String hashPassword() {
+        return Util.hashPassword(this.password, this.salt);
+    }
+
+    @Benchmark
+    public String intColorToHexString() {
+        return Util.intColorToHexString(this.colors[this.next()]);
+    }
+
+    private int next() {
+        return this.index = (this.index + 1) & (SAMPLES - 1);
+    }
+
+    private static String verificationDigit(int digits) {
+        int sum = 0;
+        int factor = 2;
+        for (int rest = digits; rest > 0; rest /= 10) {
+            sum += rest % 10 * factor;
+            factor = factor == 7 ? 2 : factor + 1;
+        }
+
+        final int digit = 11 - sum % 11;
+        return digit == 11 ? "0" : digit == 10 ? "K" : String.valueOf(digit);
+    }
+}
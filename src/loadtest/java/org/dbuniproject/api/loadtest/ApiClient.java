@@ -0,0 +1,85 @@
+package org.dbuniproject.api.loadtest;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+
+public class ApiClient {
+    private final HttpClient http = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+    private final String baseUrl;
+    private final LatencyStats stats;
+
+    public ApiClient(String baseUrl, LatencyStats stats) {
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+        this.stats = stats;
+    }
+
+    public Response get(String label, String path, String token) throws IOException, InterruptedException {
+        return this.send(label, this.request(path, token).GET());
+    }
+
+    public Response post(String label, String path, String token, Object body)
+            throws IOException, InterruptedException {
+        return this.send(label, this.request(path, token).POST(HttpRequest.BodyPublishers.ofString(body.toString())));
+    }
+
+    public Response patch(String label, String path, String token, Object body)
+            throws IOException, InterruptedException {
+        return this.send(
+                label,
+                this.request(path, token).method("PATCH", HttpRequest.BodyPublishers.ofString(body.toString()))
+        );
+    }
+
+    public String login(String rut, String password, String type) throws IOException, InterruptedException {
+        final Response response = this.post("POST /employees/sessions", "/employees/sessions", null, new JSONObject()
+                .put("rut", rut)
+                .put("password", password)
+                .put("type", type)
+        );
+        if (response.status != 200) {
+            throw new IllegalStateException("Could not log in as " + type + " " + rut + ": " + response.body);
+        }
+        return response.json().getString("session_token");
+    }
+
+    private HttpRequest.Builder request(String path, String token) {
+        final HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(this.baseUrl + path))
+                .timeout(Duration.ofSeconds(30))
+                .header("Content-Type", "application/json");
+        if (token != null) builder.header("Authorization", token);
+        return builder;
+    }
+
+    private Response send(String label, HttpRequest.Builder builder) throws IOException, InterruptedException {
+        final long start = System.nanoTime();
+        try {
+            final HttpResponse<String> response = this.http.send(builder.build(), HttpResponse.BodyHandlers.ofString());
+            this.stats.record(label, System.nanoTime() - start, response.statusCode() >= 500);
+            return new Response(response.statusCode(), response.body(), response.headers()
+                    .firstValue("X-Next-Cursor")
+                    .orElse(null));
+        } catch (IOException e) {
+            this.stats.record(label, System.nanoTime() - start, true);
+            throw e;
+        }
+    }
+
+    public record Response(int status, String body, String nextCursor) {
+        public JSONObject json() {
+            return new JSONObject(this.body);
+        }
+
+        public JSONArray jsonArray() {
+            return new JSONArray(this.body);
+        }
+    }
+}
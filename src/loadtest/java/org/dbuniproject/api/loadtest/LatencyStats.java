@@ -0,0 +1,82 @@
+package org.dbuniproject.api.loadtest;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Keeps every sample, which at load test durations is a few MB at most and makes percentiles exact
+public class LatencyStats {
+    private final ConcurrentHashMap<String, Samples> samples = new ConcurrentHashMap<>();
+    private volatile boolean recording = true;
+
+    public void record(String label, long nanos, boolean error) {
+        if (!this.recording) return;
+        this.samples.computeIfAbsent(label, k -> new Samples()).add(nanos, error);
+    }
+
+    public void setRecording(boolean recording) {
+        this.recording = recording;
+    }
+
+    public void reset() {
+        this.samples.clear();
+    }
+
+    public String report(double seconds) {
+        final StringBuilder report = new StringBuilder(String.format(
+                "%-28s %9s %7s %9s %9s %9s %9s%n",
+                "endpoint", "requests", "errors", "req/s", "p50 ms", "p99 ms", "max ms"
+        ));
+
+        long totalRequests = 0;
+        for (final Map.Entry<String, Samples> entry : new TreeMap<>(this.samples).entrySet()) {
+            final long[] sorted = entry.getValue().sorted();
+            final int errors = entry.getValue().errors();
+            totalRequests += sorted.length;
+
+            report.append(String.format(
+                    "%-28s %9d %7d %9.1f %9.2f %9.2f %9.2f%n",
+                    entry.getKey(),
+                    sorted.length,
+                    errors,
+                    sorted.length / seconds,
+                    percentile(sorted, 0.50),
+                    percentile(sorted, 0.99),
+                    sorted.length > 0 ? sorted[sorted.length - 1] / 1e6 : 0
+            ));
+        }
+
+        report.append(String.format("%-28s %9d %7s %9.1f%n", "total", totalRequests, "", totalRequests / seconds));
+        return report.toString();
+    }
+
+    private static double percentile(long[] sorted, double quantile) {
+        if (sorted.length == 0) return 0;
+        return sorted[(int) Math.min(sorted.length - 1, Math.ceil(quantile * sorted.length) - 1)] / 1e6;
+    }
+
+    private static class Samples {
+        private long[] nanos = new long[1024];
+        private int size;
+        private int errors;
+
+        synchronized void add(long value, boolean error) {
+            if (this.size == this.nanos.length) {
+                this.nanos = Arrays.copyOf(this.nanos, this.size * 2);
+            }
+            this.nanos[this.size++] = value;
+            if (error) this.errors++;
+        }
+
+        synchronized long[] sorted() {
+            final long[] copy = Arrays.copyOf(this.nanos, this.size);
+            Arrays.sort(copy);
+            return copy;
+        }
+
+        synchronized int errors() {
+            return this.errors;
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package org.dbuniproject.api.loadtest;
+
+import org.dbuniproject.api.Api;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+
+// mvn -Ploadtest compile exec:java -Dloadtest.managers=<rut>:<password>[,<rut>:<password>...]
+//
+// Without loadtest.url the API is booted in this JVM from the usual .env, which should point POSTGRES_DB_URL at a
+// disposable database loaded with the project schema and its seed data. Everything created is tagged as load test
+// data but nothing is cleaned up afterwards.
+public class LoadTest {
+    private static final String[] SORTS = {"", "&sortByPrice=asc", "&sortByPrice=desc", "&sortByName=asc"};
+
+    private final ApiClient client;
+    private final List<Seeder.Store> stores;
+    private final List<String> clients;
+    private final Map<String, Integer> mix;
+    private final int totalWeight;
+    private final ConcurrentHashMap<String, String> cashierTokens = new ConcurrentHashMap<>();
+
+    private LoadTest(ApiClient client, List<Seeder.Store> stores, List<String> clients, Map<String, Integer> mix) {
+        this.client = client;
+        this.stores = stores;
+        this.clients = clients;
+        this.mix = mix;
+        this.totalWeight = mix.values().stream().mapToInt(Integer::intValue).sum();
+    }
+
+    public static void main(String[] args) throws Exception {
+        final String managers = System.getProperty("loadtest.managers", "");
+        if (managers.isEmpty()) {
+            throw new IllegalArgumentException("Set loadtest.managers to rut:password of at least one store manager.");
+        }
+
+        String url = System.getProperty("loadtest.url", "");
+        if (url.isEmpty()) {
+            Api.main(new String[0]);
+            url = "http://localhost:" + Api.DOTENV.get("PORT") + "/api/v1";
+        }
+
+        final LatencyStats stats = new LatencyStats();
+        final ApiClient client = new ApiClient(url, stats);
+        waitForApi(client);
+
+        final Seeder seeder = new Seeder(client, Long.getLong("loadtest.seed", 42));
+        final long seedStart = System.nanoTime();
+
+        final List<String> clients = seeder.seedClients(Integer.getInteger("loadtest.clients", 200));
+        final ArrayList<Seeder.Store> stores = new ArrayList<>();
+        for (final String manager : managers.split(",")) {
+            final String[] credentials = manager.split(":", 2);
+            final Seeder.Store store = seeder.seedStore(
+                    credentials[0],
+                    credentials[1],
+                    Integer.getInteger("loadtest.products", 200),
+                    Integer.getInteger("loadtest.cashiers", 5)
+            );
+            seeder.seedSales(store, clients, Integer.getInteger("loadtest.sales", 2_000));
+            stores.add(store);
+        }
+
+        System.out.printf("Seeded %d stores in %.1f s%n%n", stores.size(), (System.nanoTime() - seedStart) / 1e9);
+        System.out.print(stats.report((System.nanoTime() - seedStart) / 1e9));
+        stats.reset();
+
+        final LoadTest loadTest = new LoadTest(client, stores, clients, parseMix(
+                System.getProperty("loadtest.mix", "browse=60,login=10,sale=20,stock=10")
+        ));
+        final int threads = Integer.getInteger("loadtest.threads", 32);
+        final long warmupMs = Long.getLong("loadtest.warmupSeconds", 10) * 1000;
+        final long durationMs = Long.getLong("loadtest.durationSeconds", 60) * 1000;
+
+        stats.setRecording(false);
+        final long end = System.currentTimeMillis() + warmupMs + durationMs;
+        final CountDownLatch done = new CountDownLatch(threads);
+        for (int i = 0; i < threads; i++) {
+            final Thread thread = new Thread(() -> {
+                try {
+                    loadTest.run(end);
+                } finally {
+                    done.countDown();
+                }
+            }, "load-test-" + i);
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        Thread.sleep(warmupMs);
+        stats.reset();
+        stats.setRecording(true);
+        final long measureStart = System.nanoTime();
+
+        done.await();
+        final double seconds = (System.nanoTime() - measureStart) / 1e9;
+
+        System.out.printf("%nMeasured %d threads for %.1f s, mix %s%n%n", threads, seconds, loadTest.mix);
+        System.out.print(stats.report(seconds));
+        System.exit(0);
+    }
+
+    // Closed loop, each thread sends its next request as soon as the previous one completes
+    private void run(long end) {
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+
+        while (System.currentTimeMillis() < end) {
+            final Seeder.Store store = this.stores.get(random.nextInt(this.stores.size()));
+
+            try {
+                switch (this.pickOperation(random)) {
+                    case "browse" -> this.browse(random);
+                    case "login" -> this.login(store, random);
+                    case "sale" -> this.sale(store, random);
+                    case "stock" -> this.stock(store, random);
+                }
+            } catch (IOException e) {
+                // Already recorded as an error against the endpoint
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private void browse(Random random) throws IOException, InterruptedException {
+        String path = "/products?pageSize=24" + SORTS[random.nextInt(SORTS.length)];
+        if (random.nextInt(4) == 0) {
+            final int min = 1_000 + random.nextInt(20_000);
+            path += "&minPrice=" + min + "&maxPrice=" + (min + 10_000 + random.nextInt(30_000));
+        }
+
+        ApiClient.Response page = this.client.get("GET /products", path, null);
+
+        // Most visitors stop at the first page, some keep scrolling
+        for (int pages = 1; page.nextCursor() != null && random.nextInt(3) == 0 && pages < 5; pages++) {
+            page = this.client.get("GET /products (next page)", path + "&cursor=" + page.nextCursor(), null);
+        }
+    }
+
+    private void login(Seeder.Store store, Random random) throws IOException, InterruptedException {
+        if (store.cashiers().isEmpty()) return;
+
+        final Seeder.Credentials cashier = store.cashiers().get(random.nextInt(store.cashiers().size()));
+        this.client.post("POST /employees/sessions", "/employees/sessions", null, new JSONObject()
+                .put("rut", cashier.rut())
+                .put("password", cashier.password())
+                .put("type", "cashier")
+        );
+    }
+
+    private void sale(Seeder.Store store, Random random) throws IOException, InterruptedException {
+        if (store.cashiers().isEmpty()) return;
+
+        final Seeder.Credentials cashier = store.cashiers().get(random.nextInt(store.cashiers().size()));
+        String token = this.cashierTokens.get(cashier.rut());
+        if (token == null) {
+            token = this.client.login(cashier.rut(), cashier.password(), "cashier");
+            this.cashierTokens.put(cashier.rut(), token);
+        }
+
+        this.client.post("POST /sales", "/sales", token, Seeder.sale(store, this.clients, random));
+    }
+
+    private void stock(Seeder.Store store, Random random) throws IOException, InterruptedException {
+        this.client.patch("PATCH /products/stocks", "/products/stocks", store.managerToken(), new JSONObject()
+                .put("sku", store.skus().get(random.nextInt(store.skus().size())))
+                .put("forSale", 400_000 + random.nextInt(100_000))
+        );
+    }
+
+    private String pickOperation(Random random) {
+        int roll = random.nextInt(this.totalWeight);
+        for (final Map.Entry<String, Integer> entry : this.mix.entrySet()) {
+            roll -= entry.getValue();
+            if (roll < 0) return entry.getKey();
+        }
+        throw new IllegalStateException();
+    }
+
+    private static Map<String, Integer> parseMix(String value) {
+        final TreeMap<String, Integer> mix = new TreeMap<>();
+        for (final String part : value.split(",")) {
+            final String[] entry = part.split("=", 2);
+            if (!List.of("browse", "login", "sale", "stock").contains(entry[0])) {
+                throw new IllegalArgumentException("Unknown operation in loadtest.mix: " + entry[0]);
+            }
+            final int weight = Integer.parseInt(entry[1]);
+            if (weight > 0) mix.put(entry[0], weight);
+        }
+        if (mix.isEmpty()) throw new IllegalArgumentException("loadtest.mix has no operation with a positive weight.");
+        return mix;
+    }
+
+    private static void waitForApi(ApiClient client) throws InterruptedException {
+        for (int attempt = 0; attempt < 50; attempt++) {
+            try {
+                if (client.get("GET /ping", "/ping", null).status() == 200) return;
+            } catch (IOException ignored) {
+            }
+            Thread.sleep(200);
+        }
+        throw new IllegalStateException("API did not come up.");
+    }
+}
@@ -0,0 +1,188 @@
+package org.dbuniproject.api.loadtest;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+// Seeds through the public API so the data goes through the same validation and procedures as real traffic. Stores
+// and their managers have no endpoint, so they come from the schema's own seed data and are passed in as credentials.
+public class Seeder {
+    private static final String[] NAMES = {"Ana", "Benjamín", "Camila", "Diego", "Fernanda", "Ignacio", "Josefa"};
+    private static final String[] LAST_NAMES = {"González", "Muñoz", "Rojas", "Díaz", "Pérez", "Soto", "Contreras"};
+    private static final String[] PRODUCTS = {"Polera", "Pantalón", "Chaqueta", "Polerón", "Camisa", "Short"};
+
+    private final ApiClient client;
+    private final Random random;
+
+    public Seeder(ApiClient client, long seed) {
+        this.client = client;
+        this.random = new Random(seed);
+    }
+
+    public Store seedStore(String managerRut, String managerPassword, int products, int cashiers)
+            throws IOException, InterruptedException {
+        final String managerToken = this.client.login(managerRut, managerPassword, "manager");
+
+        final List<Integer> types = this.ids("/products/types", managerToken);
+        final List<Integer> sizes = this.ids("/products/sizes", managerToken);
+        final List<Integer> brands = this.ids("/products/brands", managerToken);
+
+        final ArrayList<Long> skus = new ArrayList<>();
+        for (int i = 0; i < products; i++) {
+            final ApiClient.Response created = this.client.post("seed POST /products", "/products", managerToken,
+                    new JSONObject()
+                            .put("name", this.pick(PRODUCTS) + " " + this.random.nextInt(100_000))
+                            .put("description", "Producto generado para pruebas de carga.")
+                            .put("color", this.random.nextInt(0x1000000))
+                            .put("priceWithoutTax", 990 + this.random.nextInt(60_000))
+                            .put("typeId", this.pick(types))
+                            .put("sizeId", this.pick(sizes))
+                            .put("brandId", this.pick(brands))
+                            .put("minStock", 1)
+                            .put("maxStock", 1_000_000)
+            );
+            expect(created, 201);
+
+            final long sku = created.json().getLong("sku");
+            expect(this.client.patch("seed PATCH /products/stocks", "/products/stocks", managerToken, new JSONObject()
+                    .put("sku", sku)
+                    .put("forSale", 500_000)
+                    .put("inStorage", 500_000)
+            ), 200);
+            skus.add(sku);
+        }
+
+        final ArrayList<Credentials> cashierCredentials = new ArrayList<>();
+        for (int i = 0; i < cashiers; i++) {
+            final String rut = this.randomRut();
+            final ApiClient.Response created = this.client.post("seed POST /employees", "/employees", managerToken,
+                    this.person(rut).put("fullTime", this.random.nextBoolean())
+            );
+            if (created.status() == 409) continue;
+            expect(created, 201);
+
+            cashierCredentials.add(new Credentials(rut, created.json().getString("generatedPassword")));
+        }
+
+        return new Store(managerToken, skus, cashierCredentials);
+    }
+
+    public List<String> seedClients(int count) throws IOException, InterruptedException {
+        final ArrayList<String> ruts = new ArrayList<>();
+
+        for (int i = 0; i < count; i++) {
+            final String rut = this.randomRut();
+            final ApiClient.Response created = this.client.post("seed POST /clients", "/clients", null, this.person(rut));
+            if (created.status() != 201 && created.status() != 409) expect(created, 201);
+
+            ruts.add(rut);
+        }
+
+        return ruts;
+    }
+
+    // Historical sales go in through the batch endpoint, a few hundred per request
+    public void seedSales(Store store, List<String> clients, int count) throws IOException, InterruptedException {
+        if (store.cashiers().isEmpty() || count <= 0) return;
+
+        final String runId = Long.toString(System.currentTimeMillis(), 36);
+        int created = 0;
+
+        while (created < count) {
+            final Credentials cashier = store.cashiers().get(created % store.cashiers().size());
+            final String token = this.client.login(cashier.rut(), cashier.password(), "cashier");
+
+            final JSONArray sales = new JSONArray();
+            for (int i = 0; i < Math.min(500, count - created); i++) {
+                sales.put(sale(store, clients, this.random).put("key", runId + "-" + (created + i)));
+            }
+
+            expect(this.client.post("seed POST /sales/batch", "/sales/batch", token, new JSONObject()
+                    .put("sales", sales)
+            ), 200);
+            created += sales.length();
+        }
+    }
+
+    public static JSONObject sale(Store store, List<String> clients, Random random) {
+        final JSONArray products = new JSONArray();
+        final int lines = 1 + random.nextInt(5);
+        final ArrayList<Long> used = new ArrayList<>();
+
+        for (int i = 0; i < lines && used.size() < store.skus().size(); i++) {
+            final long sku = store.skus().get(random.nextInt(store.skus().size()));
+            if (used.contains(sku)) continue;
+
+            used.add(sku);
+            products.put(new JSONObject().put("sku", sku).put("quantity", 1 + random.nextInt(3)));
+        }
+
+        return new JSONObject()
+                .put("clientRut", clients.get(random.nextInt(clients.size())))
+                .put("type", random.nextInt(10) == 0 ? "factura" : "boleta")
+                .put("products", products);
+    }
+
+    private JSONObject person(String rut) {
+        return new JSONObject()
+                .put("rut", rut)
+                .put("firstName", this.pick(NAMES))
+                .put("secondName", this.pick(NAMES))
+                .put("firstLastName", this.pick(LAST_NAMES))
+                .put("secondLastName", this.pick(LAST_NAMES))
+                .put("email", "loadtest." + rut.toLowerCase() + "@example.com")
+                .put("phone", 900_000_000 + this.random.nextInt(100_000_000));
+    }
+
+    private List<Integer> ids(String path, String token) throws IOException, InterruptedException {
+        final ApiClient.Response response = this.client.get("seed GET " + path, path, token);
+        expect(response, 200);
+
+        final JSONArray array = response.jsonArray();
+        final ArrayList<Integer> ids = new ArrayList<>();
+        for (int i = 0; i < array.length(); i++) {
+            ids.add(array.getJSONObject(i).getInt("id"));
+        }
+
+        if (ids.isEmpty()) throw new IllegalStateException(path + " returned no rows, the schema is not seeded.");
+        return ids;
+    }
+
+    private String randomRut() {
+        final int digits = 30_000_000 + this.random.nextInt(60_000_000);
+        int sum = 0;
+        int factor = 2;
+        for (int rest = digits; rest > 0; rest /= 10) {
+            sum += rest % 10 * factor;
+            factor = factor == 7 ? 2 : factor + 1;
+        }
+
+        final int digit = 11 - sum % 11;
+        return digits + "-" + (digit == 11 ? "0" : digit == 10 ? "K" : String.valueOf(digit));
+    }
+
+    private <T> T pick(List<T> values) {
+        return values.get(this.random.nextInt(values.size()));
+    }
+
+    private String pick(String[] values) {
+        return values[this.random.nextInt(values.length)];
+    }
+
+    private static void expect(ApiClient.Response response, int status) {
+        if (response.status() != status) {
+            throw new IllegalStateException("Expected " + status + " but got " + response.status() + ": "
+                                            + response.body());
+        }
+    }
+
+    public record Credentials(String rut, String password) {
+    }
+
+    public record Store(String managerToken, List<Long> skus, List<Credentials> cashiers) {
+    }
+}
@@ -4,38 +4,63 @@ import io.github.cdimascio.dotenv.Dotenv;
 import io.javalin.Javalin;
 import io.javalin.apibuilder.ApiBuilder;
 import io.javalin.http.Handler;
+import io.javalin.http.HandlerType;
 import io.javalin.http.HttpStatus;
-import io.javalin.plugin.bundled.CorsPluginConfig;
+import io.javalin.util.ConcurrencyUtil;
+import org.dbuniproject.api.db.ParametersListener;
+import org.dbuniproject.api.db.SchemaMigrations;
 import org.dbuniproject.api.endpoints.*;
 import org.dbuniproject.api.json.JSONMapper;
+import org.dbuniproject.api.logging.Logger;
+import org.dbuniproject.api.metrics.Metrics;
 
 public class Api {
     public static final Dotenv DOTENV = Dotenv.load();
 
     public static void main(String[] args) {
         SessionTokenManager.loadSessionTokens();
+        SchemaMigrations.run();
+        ParametersListener.start();
+
+        final ThreadMode threadMode = getThreadMode();
 
         Javalin.create(config -> {
+                    config.useVirtualThreads = threadMode == ThreadMode.VIRTUAL;
+                    config.jetty.threadPool = ConcurrencyUtil.jettyThreadPool(
+                            "JettyServerThreadPool",
+                            Util.getIntSetting("SERVER_MIN_THREADS", 8),
+                            Util.getIntSetting("SERVER_MAX_THREADS", 250),
+                            threadMode == ThreadMode.VIRTUAL
+                    );
                     config.router.contextPath = "/api/v1";
                     config.router.ignoreTrailingSlashes = true;
-                    config.bundledPlugins.enableCors(cors ->
-                            cors.addRule(CorsPluginConfig.CorsRule::anyHost)
-                    );
+                    config.bundledPlugins.enableCors(cors -> cors.addRule(rule -> {
+                        rule.anyHost();
+                        rule.exposeHeader(Endpoint.NEXT_CURSOR_HEADER);
+                        rule.exposeHeader(Endpoint.TOTAL_COUNT_HEADER);
+                        rule.exposeHeader(Endpoint.IDEMPOTENT_REPLAYED_HEADER);
+                    }));
                     config.router.apiBuilder(() -> registerEndpoints(
+                            new AdminQueriesEndpoint(),
                             new ClientsEndpoint(),
                             new EmployeesContractsEndpoint(),
                             new EmployeesEndpoint(),
                             new EmployeesMeEndpoint(),
                             new EmployeesSalariesEndpoint(),
                             new EmployeesSessionsEndpoint(),
+                            new MetricsEndpoint(),
                             new PingEndpoint(),
                             new ProductsBrandsEndpoint(),
                             new ProductsColorsEndpoint(),
                             new ProductsEndpoint(),
                             new ProductsSizesEndpoint(),
+                            new ProductsStocksAdjustmentsEndpoint(),
+                            new ProductsStocksBulkEndpoint(),
                             new ProductsStocksEndpoint(),
                             new ProductsTypesEndpoint(),
                             new RegionsEndpoint(),
+                            new SalesAnalyticsEndpoint(),
+                            new SalesBatchEndpoint(),
                             new SalesEndpoint(),
                             new SalesTaxEndpoint(),
                             new StoresEndpoint(),
@@ -44,31 +69,55 @@ public class Api {
                     config.jsonMapper(new JSONMapper());
                 })
                 .beforeMatched(wrapHandlerWithErrorHandler(Endpoint::beforeMatched))
+                .afterMatched(wrapHandlerWithErrorHandler(Endpoint::afterMatched))
                 .start(Integer.parseInt(DOTENV.get("PORT")));
     }
 
+    // Switchable so both models can be load tested against the same build
+    private static ThreadMode getThreadMode() {
+        final String value = DOTENV.get("SERVER_THREAD_MODE", ThreadMode.PLATFORM.toString());
+        final ThreadMode threadMode = Util.stringToEnum(value.toLowerCase(), ThreadMode.class);
+        if (threadMode == null) {
+            throw new RuntimeException("Invalid SERVER_THREAD_MODE: " + value);
+        }
+
+        if (threadMode == ThreadMode.VIRTUAL && !ConcurrencyUtil.isLoomAvailable()) {
+            Logger.warn("Virtual threads are not available on Java " + System.getProperty("java.version")
+                        + ", falling back to platform threads.");
+            return ThreadMode.PLATFORM;
+        }
+
+        Logger.log(Logger.Level.INFO, "Handling requests on " + threadMode + " threads.");
+        return threadMode;
+    }
+
     private static void registerEndpoints(Endpoint... endpoints) {
         for (final Endpoint endpoint : endpoints) {
             ApiBuilder.path(endpoint.path, () -> {
                 if (endpoint instanceof Endpoint.GetMethod method) {
-                    ApiBuilder.get(wrapHandlerWithErrorHandler(method::get));
+                    ApiBuilder.get(wrapEndpointHandler(HandlerType.GET, endpoint, method::get));
                 }
                 if (endpoint instanceof Endpoint.PostMethod method) {
-                    ApiBuilder.post(wrapHandlerWithErrorHandler(method::post));
+                    ApiBuilder.post(wrapEndpointHandler(HandlerType.POST, endpoint, method::post));
                 }
                 if (endpoint instanceof Endpoint.PutMethod method) {
-                    ApiBuilder.put(wrapHandlerWithErrorHandler(method::put));
+                    ApiBuilder.put(wrapEndpointHandler(HandlerType.PUT, endpoint, method::put));
                 }
                 if (endpoint instanceof Endpoint.PatchMethod method) {
-                    ApiBuilder.patch(wrapHandlerWithErrorHandler(method::patch));
+                    ApiBuilder.patch(wrapEndpointHandler(HandlerType.PATCH, endpoint, method::patch));
                 }
                 if (endpoint instanceof Endpoint.DeleteMethod method) {
-                    ApiBuilder.delete(wrapHandlerWithErrorHandler(method::delete));
+                    ApiBuilder.delete(wrapEndpointHandler(HandlerType.DELETE, endpoint, method::delete));
                 }
             });
         }
     }
 
+    // Timing wraps the error handler so the recorded status is the one actually sent
+    private static Handler wrapEndpointHandler(HandlerType method, Endpoint endpoint, Handler handler) {
+        return Metrics.instrument(method, endpoint.path, wrapHandlerWithErrorHandler(handler));
+    }
+
     @SuppressWarnings("CallToPrintStackTrace")
     private static Handler wrapHandlerWithErrorHandler(Handler handler) {
         return (ctx) -> {
@@ -90,4 +139,20 @@ public class Api {
             }
         };
     }
+
+    private enum ThreadMode {
+        PLATFORM("platform"),
+        VIRTUAL("virtual");
+
+        private final String name;
+
+        ThreadMode(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public String toString() {
+            return this.name;
+        }
+    }
 }
@@ -0,0 +1,172 @@
+package org.dbuniproject.api;
+
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+import org.dbuniproject.api.db.DatabaseConnection;
+import org.dbuniproject.api.db.structures.IdempotentResponse;
+import org.dbuniproject.api.db.structures.PersistedIdempotentResponse;
+import org.dbuniproject.api.logging.Logger;
+
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+public class IdempotencyStore {
+    private static final long TTL_MS = Util.getLongSetting("IDEMPOTENCY_TTL_MS", 24 * 3_600_000);
+    private static final int MAX_ENTRIES = Util.getIntSetting("IDEMPOTENCY_MAX_ENTRIES", 10_000);
+    private static final boolean PERSIST = Boolean.parseBoolean(Api.DOTENV.get("IDEMPOTENCY_PERSIST", "false"));
+    private static final long SWEEP_INTERVAL_MS = 60_000;
+
+    private static final ConcurrentHashMap<String, Entry> ENTRIES = new ConcurrentHashMap<>();
+    // Insertion order for evicting the oldest entries once the store is full
+    private static final ConcurrentLinkedQueue<Entry> INSERTION_ORDER = new ConcurrentLinkedQueue<>();
+
+    static {
+        final ScheduledExecutorService sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "idempotency-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sweeper.scheduleWithFixedDelay(
+                IdempotencyStore::sweep,
+                SWEEP_INTERVAL_MS,
+                SWEEP_INTERVAL_MS,
+                TimeUnit.MILLISECONDS
+        );
+    }
+
+    // Claims the key for a new request, or returns what the caller should answer instead
+    @Nonnull
+    public static Outcome begin(@Nonnull String key, @Nonnull String fingerprint) {
+        final long now = System.currentTimeMillis();
+
+        while (true) {
+            final Entry existing = ENTRIES.get(key);
+
+            if (existing != null && existing.expiresAt <= now) {
+                ENTRIES.remove(key, existing);
+                continue;
+            }
+
+            if (existing != null) {
+                if (!existing.fingerprint.equals(fingerprint)) return new Outcome(Outcome.Type.MISMATCH, null);
+
+                final IdempotentResponse response = existing.response;
+                return response != null
+                        ? new Outcome(Outcome.Type.REPLAY, response)
+                        : new Outcome(Outcome.Type.IN_PROGRESS, null);
+            }
+
+            // A response stored before a restart is cached as it was stored, with the body it answered and its expiry
+            final PersistedIdempotentResponse stored = PERSIST ? loadPersisted(key) : null;
+            final Entry entry = stored != null
+                    ? new Entry(key, stored.response().fingerprint(), stored.expiresAt().getTime())
+                    : new Entry(key, fingerprint, now + TTL_MS);
+            if (stored != null) {
+                entry.response = stored.response();
+            }
+
+            if (ENTRIES.putIfAbsent(key, entry) != null) continue;
+
+            INSERTION_ORDER.add(entry);
+            evictOverflow();
+
+            if (stored != null) {
+                return stored.response().fingerprint().equals(fingerprint)
+                        ? new Outcome(Outcome.Type.REPLAY, stored.response())
+                        : new Outcome(Outcome.Type.MISMATCH, null);
+            }
+
+            return new Outcome(Outcome.Type.STARTED, null);
+        }
+    }
+
+    public static void complete(@Nonnull String key, int status, @Nullable String contentType, @Nonnull String body) {
+        final Entry entry = ENTRIES.get(key);
+        if (entry == null || entry.response != null) return;
+
+        final IdempotentResponse response = new IdempotentResponse(entry.fingerprint, status, contentType, body);
+        entry.response = response;
+
+        if (PERSIST) {
+            try (final DatabaseConnection db = new DatabaseConnection()) {
+                db.saveIdempotentResponse(key, response, new Timestamp(entry.expiresAt));
+            } catch (SQLException e) {
+                Logger.warn("[idempotency] Could not persist response for key " + key + ": " + e.getMessage());
+            }
+        }
+    }
+
+    // Lets a retry run the request again, used when it failed in a way that should not be replayed
+    public static void abandon(@Nonnull String key) {
+        final Entry entry = ENTRIES.get(key);
+        if (entry != null && entry.response == null) {
+            ENTRIES.remove(key, entry);
+        }
+    }
+
+    @Nullable
+    private static PersistedIdempotentResponse loadPersisted(@Nonnull String key) {
+        try (final DatabaseConnection db = new DatabaseConnection()) {
+            return db.getIdempotentResponse(key);
+        } catch (SQLException e) {
+            Logger.warn("[idempotency] Could not load response for key " + key + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static void evictOverflow() {
+        while (ENTRIES.size() > MAX_ENTRIES) {
+            final Entry oldest = INSERTION_ORDER.poll();
+            if (oldest == null) return;
+
+            ENTRIES.remove(oldest.key, oldest);
+        }
+    }
+
+    private static void sweep() {
+        final long now = System.currentTimeMillis();
+
+        // Entries share one TTL, so insertion order is mostly expiry order. Entries loaded from the database keep
+        // their earlier expiry and may outlive it here, begin() drops them once they are looked up again.
+        Entry oldest;
+        while ((oldest = INSERTION_ORDER.peek()) != null && oldest.expiresAt <= now) {
+            INSERTION_ORDER.poll();
+            ENTRIES.remove(oldest.key, oldest);
+        }
+
+        if (!PERSIST) return;
+
+        try (final DatabaseConnection db = new DatabaseConnection()) {
+            db.deleteExpiredIdempotentResponses();
+        } catch (SQLException e) {
+            Logger.warn("[idempotency] Could not delete expired responses: " + e.getMessage());
+        }
+    }
+
+    public record Outcome(@Nonnull Type type, @Nullable IdempotentResponse response) {
+        public enum Type {
+            STARTED,
+            IN_PROGRESS,
+            REPLAY,
+            MISMATCH
+        }
+    }
+
+    private static class Entry {
+        private final String key;
+        private final String fingerprint;
+        private final long expiresAt;
+        private volatile IdempotentResponse response;
+
+        private Entry(String key, String fingerprint, long expiresAt) {
+            this.key = key;
+            this.fingerprint = fingerprint;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -2,94 +2,445 @@ package org.dbuniproject.api;
 
 import jakarta.annotation.Nonnull;
 import jakarta.annotation.Nullable;
+import org.dbuniproject.api.logging.Logger;
 import org.json.JSONObject;
 
+import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileWriter;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.security.SecureRandom;
+import java.util.ArrayList;
 import java.util.Base64;
+import java.util.EnumMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 public class SessionTokenManager {
-    private static final File TOKENS_FILE = new File("data/tokens.json");
-    private static final JSONObject TOKENS = new JSONObject()
-            .put(Token.Type.MANAGER.toString(), new JSONObject())
-            .put(Token.Type.CASHIER.toString(), new JSONObject());
+    private static final File SNAPSHOT_FILE = new File("data/tokens.json");
+    private static final File JOURNAL_FILE = new File("data/tokens.journal");
+    private static final long JOURNAL_FLUSH_INTERVAL_MS = Util.getLongSetting("SESSION_JOURNAL_FLUSH_MS", 1_000);
+    private static final long SNAPSHOT_INTERVAL_MS = Util.getLongSetting("SESSION_SNAPSHOT_INTERVAL_MS", 300_000);
+    private static final int SNAPSHOT_JOURNAL_THRESHOLD = 10_000;
+    private static final long CASHIER_TTL_MS = Util.getLongSetting("SESSION_CASHIER_TTL_MS", 12 * 3_600_000);
+    private static final long MANAGER_TTL_MS = Util.getLongSetting("SESSION_MANAGER_TTL_MS", 24 * 3_600_000);
+    private static final long SWEEP_TICK_MS = Util.getLongSetting("SESSION_SWEEP_TICK_MS", 60_000);
+    // Sliding renewal only writes the expiry once it has aged this much, so hot sessions don't hammer a shared field
+    private static final long RENEWAL_GRANULARITY_MS = Math.min(SWEEP_TICK_MS, 60_000);
+    private static final int TOKEN_BYTES = 64;
+    private static final int TOKEN_LENGTH = Base64.getEncoder().encodeToString(new byte[TOKEN_BYTES]).length();
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private static final ConcurrentHashMap<String, Session> TOKENS = new ConcurrentHashMap<>();
+    private static final EnumMap<Token.Type, ConcurrentHashMap<String, Session>> TOKENS_BY_RUT =
+            new EnumMap<>(Token.Type.class);
+    private static final ConcurrentLinkedQueue<String> PENDING_JOURNAL = new ConcurrentLinkedQueue<>();
+    private static final AtomicLong SEQUENCE = new AtomicLong();
+    private static final AtomicLong EXPIRED_SESSIONS = new AtomicLong();
+    // Mutations share the read side so only snapshots exclude them, lookups never take it
+    private static final ReentrantReadWriteLock SNAPSHOT_LOCK = new ReentrantReadWriteLock();
+    // Timer wheel of sessions keyed by expiry tick, spanning the longest TTL so no bucket holds two rotations
+    private static final ConcurrentLinkedQueue<Session>[] EXPIRY_WHEEL;
+    private static long lastSweptTick = System.currentTimeMillis() / SWEEP_TICK_MS - 1;
+    private static FileChannel journal;
+    private static int journalRecords = 0;
+
+    static {
+        for (final Token.Type type : Token.Type.values()) {
+            TOKENS_BY_RUT.put(type, new ConcurrentHashMap<>());
+        }
+
+        final long maxTtl = Math.max(Math.max(CASHIER_TTL_MS, MANAGER_TTL_MS), 0);
+        final int wheelSize = (int) (maxTtl / SWEEP_TICK_MS) + 2;
+
+        //noinspection unchecked
+        EXPIRY_WHEEL = new ConcurrentLinkedQueue[wheelSize];
+        for (int i = 0; i < wheelSize; i++) {
+            EXPIRY_WHEEL[i] = new ConcurrentLinkedQueue<>();
+        }
+    }
 
     public static void loadSessionTokens() {
-        if (!TOKENS_FILE.exists()) {
-            //noinspection ResultOfMethodCallIgnored
-            TOKENS_FILE.getParentFile().mkdirs();
-            try {
-                //noinspection ResultOfMethodCallIgnored
-                TOKENS_FILE.createNewFile();
-            } catch (IOException e) {
-                throw new RuntimeException(e);
+        //noinspection ResultOfMethodCallIgnored
+        SNAPSHOT_FILE.getParentFile().mkdirs();
+
+        long snapshotSequence = 0;
+        if (SNAPSHOT_FILE.exists() && SNAPSHOT_FILE.length() > 0) {
+            final JSONObject json = Util.readJSONObjectFile(SNAPSHOT_FILE);
+            snapshotSequence = json.optLong("sequence", 0);
+
+            for (final Token.Type type : Token.Type.values()) {
+                final JSONObject tokens = json.optJSONObject(type.toString(), new JSONObject());
+                for (final String key : tokens.keySet()) {
+                    // Older snapshots also stored the reverse token -> rut mapping
+                    if (key.length() == TOKEN_LENGTH) continue;
+
+                    final JSONObject session = tokens.optJSONObject(key);
+                    if (session != null) {
+                        applyGenerated(
+                                new Token(session.getString("token"), key, type),
+                                session.getLong("expiresAt")
+                        );
+                    } else {
+                        applyGenerated(new Token(tokens.getString(key), key, type), newExpiry(type));
+                    }
+                }
             }
-            saveSessionTokens();
-            return;
         }
 
-        final JSONObject json = Util.readJSONObjectFile(TOKENS_FILE);
+        SEQUENCE.set(Math.max(snapshotSequence, replayJournal(snapshotSequence)));
+
+        try {
+            journal = FileChannel.open(
+                    JOURNAL_FILE.toPath(),
+                    StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE,
+                    StandardOpenOption.APPEND
+            );
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+
+        compact();
 
-        TOKENS.put(Token.Type.MANAGER.toString(), json.getJSONObject(Token.Type.MANAGER.toString()));
-        TOKENS.put(Token.Type.CASHIER.toString(), json.getJSONObject(Token.Type.CASHIER.toString()));
+        final ScheduledExecutorService persistence = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "session-token-persistence");
+            thread.setDaemon(true);
+            return thread;
+        });
+        persistence.scheduleWithFixedDelay(
+                SessionTokenManager::flushJournal,
+                JOURNAL_FLUSH_INTERVAL_MS,
+                JOURNAL_FLUSH_INTERVAL_MS,
+                TimeUnit.MILLISECONDS
+        );
+        persistence.scheduleWithFixedDelay(
+                SessionTokenManager::compact,
+                SNAPSHOT_INTERVAL_MS,
+                SNAPSHOT_INTERVAL_MS,
+                TimeUnit.MILLISECONDS
+        );
+        persistence.scheduleAtFixedRate(
+                SessionTokenManager::sweepExpiredSessions,
+                SWEEP_TICK_MS,
+                SWEEP_TICK_MS,
+                TimeUnit.MILLISECONDS
+        );
+
+        Runtime.getRuntime().addShutdownHook(new Thread(
+                SessionTokenManager::flushJournal,
+                "session-token-persistence-shutdown"
+        ));
     }
 
     @Nonnull
     public static Token generateSessionToken(@Nonnull Token.Type type, @Nonnull String rut) {
-        final JSONObject destination = TOKENS.getJSONObject(type.toString());
-        if (destination.has(rut)) {
-            revokeSessionToken(type, rut);
-        }
+        final Session generated;
 
-        String token;
-        do {
-            byte[] randomBytes = new byte[64];
-            new SecureRandom().nextBytes(randomBytes);
-            token = Base64.getEncoder().encodeToString(randomBytes);
-        } while (destination.has(token));
+        SNAPSHOT_LOCK.readLock().lock();
+        try {
+            // compute() serializes concurrent logins of the same employee
+            generated = TOKENS_BY_RUT.get(type).compute(rut, (key, previous) -> {
+                if (previous != null) {
+                    TOKENS.remove(previous.token.token);
+                }
 
-        destination.put(rut, token);
-        destination.put(token, rut);
-        saveSessionTokens();
+                Session session;
+                do {
+                    final byte[] randomBytes = new byte[TOKEN_BYTES];
+                    RANDOM.nextBytes(randomBytes);
+                    final Token token = new Token(Base64.getEncoder().encodeToString(randomBytes), rut, type);
+                    session = new Session(token, newExpiry(type));
+                } while (TOKENS.putIfAbsent(session.token.token, session) != null);
 
-        return new Token(token, rut, type);
+                appendJournal('+', session);
+                return session;
+            });
+        } finally {
+            SNAPSHOT_LOCK.readLock().unlock();
+        }
+
+        scheduleExpiry(generated);
+        return generated.token;
     }
 
     @Nullable
     public static Token getSessionToken(@Nonnull String token) {
-        for (final Token.Type type : Token.Type.values()) {
-            final String rut = TOKENS.getJSONObject(type.name).optString(token, null);
-            if (rut != null) {
-                return new Token(token, rut, type);
-            }
+        final Session session = TOKENS.get(token);
+        if (session == null) return null;
+
+        final long now = System.currentTimeMillis();
+        final long expiresAt = session.expiresAt;
+
+        if (expiresAt <= now) {
+            expire(session);
+            return null;
         }
 
-        return null;
+        final long ttl = getTtl(session.token.type);
+        if (ttl > 0 && expiresAt - now < ttl - RENEWAL_GRANULARITY_MS) {
+            session.expiresAt = now + ttl;
+        }
+
+        return session.token;
     }
 
     public static void revokeSessionToken(@Nonnull Token.Type type, @Nonnull String rut) {
-        final JSONObject source = TOKENS.getJSONObject(type.name);
-        if (!source.has(rut)) return;
-
-        final String token = source.getString(rut);
-
-        source.remove(rut);
-        source.remove(token);
-        saveSessionTokens();
+        SNAPSHOT_LOCK.readLock().lock();
+        try {
+            TOKENS_BY_RUT.get(type).computeIfPresent(rut, (key, session) -> {
+                TOKENS.remove(session.token.token);
+                appendJournal('-', session);
+                return null;
+            });
+        } finally {
+            SNAPSHOT_LOCK.readLock().unlock();
+        }
     }
 
     public static void revokeSessionToken(@Nonnull Token token) {
         revokeSessionToken(token.type, token.rut);
     }
 
-    private static void saveSessionTokens() {
-        try (FileWriter fileWriter = new FileWriter(TOKENS_FILE)) {
-            fileWriter.write(TOKENS.toString());
+    public static int getLiveSessionCount(@Nonnull Token.Type type) {
+        return TOKENS_BY_RUT.get(type).size();
+    }
+
+    public static long getExpiredSessionCount() {
+        return EXPIRED_SESSIONS.get();
+    }
+
+    private static long getTtl(@Nonnull Token.Type type) {
+        return type == Token.Type.CASHIER ? CASHIER_TTL_MS : MANAGER_TTL_MS;
+    }
+
+    private static long newExpiry(@Nonnull Token.Type type) {
+        final long ttl = getTtl(type);
+        return ttl > 0 ? System.currentTimeMillis() + ttl : Long.MAX_VALUE;
+    }
+
+    private static void expire(@Nonnull Session session) {
+        SNAPSHOT_LOCK.readLock().lock();
+        try {
+            // Only evict if the session is still current, a concurrent login may have replaced it already
+            TOKENS_BY_RUT.get(session.token.type).computeIfPresent(session.token.rut, (key, current) -> {
+                if (current != session) return current;
+
+                TOKENS.remove(session.token.token);
+                appendJournal('-', session);
+                EXPIRED_SESSIONS.incrementAndGet();
+                return null;
+            });
+        } finally {
+            SNAPSHOT_LOCK.readLock().unlock();
+        }
+    }
+
+    private static void scheduleExpiry(@Nonnull Session session) {
+        if (session.expiresAt == Long.MAX_VALUE) return;
+
+        final long tick = session.expiresAt / SWEEP_TICK_MS;
+        EXPIRY_WHEEL[(int) Math.floorMod(tick, EXPIRY_WHEEL.length)].add(session);
+    }
+
+    private static void sweepExpiredSessions() {
+        final long now = System.currentTimeMillis();
+        // Only fully elapsed ticks are swept, so everything left in their buckets is either expired or renewed
+        final long lastElapsedTick = now / SWEEP_TICK_MS - 1;
+        final long firstTick = Math.max(lastSweptTick + 1, lastElapsedTick - EXPIRY_WHEEL.length + 1);
+        final long expiredBefore = EXPIRED_SESSIONS.get();
+
+        for (long tick = firstTick; tick <= lastElapsedTick; tick++) {
+            final ConcurrentLinkedQueue<Session> bucket = EXPIRY_WHEEL[(int) Math.floorMod(tick, EXPIRY_WHEEL.length)];
+            final ArrayList<Session> sessions = new ArrayList<>();
+
+            Session session;
+            while ((session = bucket.poll()) != null) {
+                sessions.add(session);
+            }
+
+            for (final Session candidate : sessions) {
+                if (TOKENS.get(candidate.token.token) != candidate) continue;
+
+                if (candidate.expiresAt <= now) {
+                    expire(candidate);
+                } else {
+                    scheduleExpiry(candidate);
+                }
+            }
+        }
+
+        lastSweptTick = Math.max(lastSweptTick, lastElapsedTick);
+
+        final long expired = EXPIRED_SESSIONS.get() - expiredBefore;
+        if (expired > 0 && Logger.shouldLog(Logger.Level.INFO)) {
+            Logger.log(Logger.Level.INFO, "[sessions] Evicted " + expired + " expired sessions. Live: "
+                                          + getLiveSessionCount(Token.Type.CASHIER) + " cashier, "
+                                          + getLiveSessionCount(Token.Type.MANAGER) + " manager."
+            );
+        }
+    }
+
+    private static void appendJournal(char operation, @Nonnull Session session) {
+        PENDING_JOURNAL.add(SEQUENCE.incrementAndGet() + " " + operation + " " + session.token.type + " "
+                            + session.token.rut + " " + session.token.token + " " + session.expiresAt + "\n");
+    }
+
+    private static void applyGenerated(@Nonnull Token token, long expiresAt) {
+        if (expiresAt <= System.currentTimeMillis()) return;
+
+        final Session session = new Session(token, expiresAt);
+        final Session previous = TOKENS_BY_RUT.get(token.type).put(token.rut, session);
+        if (previous != null) {
+            TOKENS.remove(previous.token.token);
+        }
+        TOKENS.put(token.token, session);
+        scheduleExpiry(session);
+    }
+
+    private static void applyRevoked(@Nonnull Token token) {
+        final ConcurrentHashMap<String, Session> sessionsByRut = TOKENS_BY_RUT.get(token.type);
+        final Session current = sessionsByRut.get(token.rut);
+
+        if (current != null && current.token.token.equals(token.token)) {
+            sessionsByRut.remove(token.rut);
+            TOKENS.remove(token.token);
+        }
+    }
+
+    private static long replayJournal(long snapshotSequence) {
+        if (!JOURNAL_FILE.exists()) return 0;
+
+        long lastSequence = 0;
+
+        try (final BufferedReader reader = Files.newBufferedReader(JOURNAL_FILE.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                final String[] parts = line.split(" ");
+                // A torn last line means the process died mid-write, everything before it is intact
+                if (parts.length != 5 && parts.length != 6) break;
+
+                final long sequence;
+                final long expiresAt;
+                try {
+                    sequence = Long.parseLong(parts[0]);
+                    expiresAt = parts.length == 6 ? Long.parseLong(parts[5]) : -1;
+                } catch (NumberFormatException e) {
+                    break;
+                }
+
+                final Token.Type type = Util.stringToEnum(parts[2], Token.Type.class);
+                if (type == null) break;
+
+                lastSequence = Math.max(lastSequence, sequence);
+                if (sequence <= snapshotSequence) continue;
+
+                final Token token = new Token(parts[4], parts[3], type);
+                if (parts[1].equals("+")) {
+                    applyGenerated(token, expiresAt != -1 ? expiresAt : newExpiry(type));
+                } else {
+                    applyRevoked(token);
+                }
+            }
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
+
+        return lastSequence;
+    }
+
+    private static synchronized void flushJournal() {
+        if (PENDING_JOURNAL.isEmpty()) return;
+
+        final StringBuilder records = new StringBuilder();
+        int count = 0;
+        String record;
+        while ((record = PENDING_JOURNAL.poll()) != null) {
+            records.append(record);
+            count++;
+        }
+
+        try {
+            final ByteBuffer buffer = ByteBuffer.wrap(records.toString().getBytes(StandardCharsets.UTF_8));
+            while (buffer.hasRemaining()) {
+                journal.write(buffer);
+            }
+            journal.force(false);
+        } catch (IOException e) {
+            Logger.warn("[sessions] Could not write session journal.", e);
+            return;
+        }
+
+        journalRecords += count;
+        if (journalRecords >= SNAPSHOT_JOURNAL_THRESHOLD) {
+            compact();
+        }
+    }
+
+    private static synchronized void compact() {
+        final JSONObject snapshot = new JSONObject();
+
+        SNAPSHOT_LOCK.writeLock().lock();
+        try {
+            snapshot.put("sequence", SEQUENCE.get());
+            for (final Token.Type type : Token.Type.values()) {
+                final JSONObject sessions = new JSONObject();
+                for (final Session session : TOKENS_BY_RUT.get(type).values()) {
+                    // Renewals are not journaled, so snapshots are what carry sliding expiries across restarts
+                    sessions.put(session.token.rut, new JSONObject()
+                            .put("token", session.token.token)
+                            .put("expiresAt", session.expiresAt)
+                    );
+                }
+                snapshot.put(type.toString(), sessions);
+            }
+        } finally {
+            SNAPSHOT_LOCK.writeLock().unlock();
+        }
+
+        final File temporaryFile = new File(SNAPSHOT_FILE.getPath() + ".tmp");
+
+        try {
+            try (final FileOutputStream output = new FileOutputStream(temporaryFile)) {
+                output.write(snapshot.toString().getBytes(StandardCharsets.UTF_8));
+                output.getFD().sync();
+            }
+
+            Files.move(
+                    temporaryFile.toPath(),
+                    SNAPSHOT_FILE.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE
+            );
+
+            // Everything written so far is covered by the snapshot, pending records are flushed after this
+            journal.truncate(0);
+            journal.force(false);
+            journalRecords = 0;
+        } catch (IOException e) {
+            Logger.warn("[sessions] Could not write session snapshot.", e);
+        }
+    }
+
+    private static final class Session {
+        private final Token token;
+        private volatile long expiresAt;
+
+        private Session(@Nonnull Token token, long expiresAt) {
+            this.token = token;
+            this.expiresAt = expiresAt;
+        }
     }
 
     public record Token(@Nonnull String token, @Nonnull String rut, @Nonnull Type type) {
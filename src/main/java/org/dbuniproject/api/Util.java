@@ -49,6 +49,28 @@ public class Util {
         }
     }
 
+    public static int getIntSetting(String key, int defaultValue) {
+        final String value = Api.DOTENV.get(key);
+        if (value == null || value.isEmpty()) return defaultValue;
+
+        try {
+            return Integer.parseInt(value.strip());
+        } catch (NumberFormatException e) {
+            throw new RuntimeException("Invalid integer for setting " + key + ": " + value);
+        }
+    }
+
+    public static long getLongSetting(String key, long defaultValue) {
+        final String value = Api.DOTENV.get(key);
+        if (value == null || value.isEmpty()) return defaultValue;
+
+        try {
+            return Long.parseLong(value.strip());
+        } catch (NumberFormatException e) {
+            throw new RuntimeException("Invalid integer for setting " + key + ": " + value);
+        }
+    }
+
     public static JSONObject readJSONObjectFile(File file) {
         final String content;
         try {
@@ -0,0 +1,133 @@
+package org.dbuniproject.api.db;
+
+import com.google.common.hash.Hashing;
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+import org.dbuniproject.api.json.JSONMapper;
+import org.dbuniproject.api.logging.Logger;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+public class CachedQuery<T> {
+    private static final JSONMapper JSON_MAPPER = new JSONMapper();
+    private static final ExecutorService REFRESH_EXECUTOR = Executors.newSingleThreadExecutor(runnable -> {
+        final Thread thread = new Thread(runnable, "cached-query-refresh");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final String name;
+    private final Loader<T> loader;
+    private final long refreshIntervalMs;
+    private final ReentrantLock loadLock = new ReentrantLock();
+    private final AtomicBoolean refreshing = new AtomicBoolean();
+    // Bumped on invalidation so a load that started before it can't install stale data afterwards
+    private final AtomicLong version = new AtomicLong();
+    private volatile Snapshot<T> snapshot;
+
+    public CachedQuery(@Nonnull String name, long refreshIntervalMs, @Nonnull Loader<T> loader) {
+        this.name = name;
+        this.refreshIntervalMs = refreshIntervalMs;
+        this.loader = loader;
+    }
+
+    @Nonnull
+    public Snapshot<T> get() throws SQLException {
+        return this.get(null);
+    }
+
+    // Callers already holding a connection pass it in, so a miss doesn't borrow a second one from the pool
+    @Nonnull
+    public Snapshot<T> get(@Nullable DatabaseConnection db) throws SQLException {
+        final Snapshot<T> current = this.snapshot;
+
+        if (current == null) {
+            return this.loadNow(db);
+        }
+
+        if (System.currentTimeMillis() - current.loadedAt >= this.refreshIntervalMs
+            && this.refreshing.compareAndSet(false, true)) {
+            REFRESH_EXECUTOR.execute(this::refreshInBackground);
+        }
+
+        return current;
+    }
+
+    public void invalidate() {
+        this.version.incrementAndGet();
+        this.snapshot = null;
+    }
+
+    @Nonnull
+    private Snapshot<T> loadNow(@Nullable DatabaseConnection db) throws SQLException {
+        this.loadLock.lock();
+        try {
+            // Concurrent misses wait here and pick up the snapshot loaded by the first one
+            final Snapshot<T> current = this.snapshot;
+            if (current != null) return current;
+
+            return this.load(db);
+        } finally {
+            this.loadLock.unlock();
+        }
+    }
+
+    private void refreshInBackground() {
+        try {
+            this.loadLock.lock();
+            try {
+                this.load(null);
+            } finally {
+                this.loadLock.unlock();
+            }
+        } catch (SQLException | RuntimeException e) {
+            Logger.warn("[cache] Could not refresh " + this.name + ".", e);
+        } finally {
+            this.refreshing.set(false);
+        }
+    }
+
+    @Nonnull
+    private Snapshot<T> load(@Nullable DatabaseConnection db) throws SQLException {
+        final long loadVersion = this.version.get();
+        final T value;
+
+        if (db != null) {
+            value = this.loader.load(db);
+        } else {
+            try (final DatabaseConnection ownDb = new DatabaseConnection()) {
+                value = this.loader.load(ownDb);
+            }
+        }
+
+        final byte[] json = JSON_MAPPER.toJsonString(value, value.getClass()).getBytes(StandardCharsets.UTF_8);
+        final Snapshot<T> loaded = new Snapshot<>(
+                value,
+                json,
+                "\"" + Hashing.sha256().hashBytes(json).toString().substring(0, 32) + "\"",
+                System.currentTimeMillis()
+        );
+
+        if (this.version.get() == loadVersion) {
+            this.snapshot = loaded;
+        }
+
+        return loaded;
+    }
+
+    @FunctionalInterface
+    public interface Loader<T> {
+        @Nonnull
+        T load(@Nonnull DatabaseConnection db) throws SQLException;
+    }
+
+    // The value is shared by every reader and must not be mutated. The ETag is a strong validator of the JSON bytes.
+    public record Snapshot<T>(@Nonnull T value, @Nonnull byte[] json, @Nonnull String etag, long loadedAt) {
+    }
+}
@@ -0,0 +1,371 @@
+package org.dbuniproject.api.db;
+
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+import org.dbuniproject.api.Api;
+import org.dbuniproject.api.Util;
+import org.dbuniproject.api.logging.Logger;
+import org.postgresql.PGStatement;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+public class ConnectionPool {
+    private static final String POSTGRES_DB_URL = Api.DOTENV.get("POSTGRES_DB_URL");
+    private static final int MIN_SIZE = Util.getIntSetting("POSTGRES_POOL_MIN_SIZE", 2);
+    private static final int MAX_SIZE = Util.getIntSetting("POSTGRES_POOL_MAX_SIZE", 10);
+    private static final long ACQUIRE_TIMEOUT_MS = Util.getLongSetting("POSTGRES_POOL_ACQUIRE_TIMEOUT_MS", 5_000);
+    private static final long IDLE_TIMEOUT_MS = Util.getLongSetting("POSTGRES_POOL_IDLE_TIMEOUT_MS", 600_000);
+    // Off by default, it captures a stack trace on every borrow and is meant to be turned on while chasing a leak
+    private static final long LEAK_THRESHOLD_MS = Util.getLongSetting("POSTGRES_POOL_LEAK_THRESHOLD_MS", 0);
+    private static final int VALIDATION_TIMEOUT_S = Util.getIntSetting("POSTGRES_POOL_VALIDATION_TIMEOUT_S", 2);
+    private static final int STATEMENT_CACHE_SIZE = Util.getIntSetting("POSTGRES_STATEMENT_CACHE_SIZE", 128);
+    // Connections returned this recently are assumed alive and skip the validation round trip
+    private static final long VALIDATION_BYPASS_MS = 500;
+    private static final long MAINTENANCE_INTERVAL_MS = 30_000;
+
+    private static final ReentrantLock LOCK = new ReentrantLock();
+    private static final Condition CONNECTION_RELEASED = LOCK.newCondition();
+    private static final ArrayDeque<PooledConnection> IDLE = new ArrayDeque<>();
+    private static final Set<PooledConnection> BORROWED = ConcurrentHashMap.newKeySet();
+    private static int totalConnections = 0;
+
+    static {
+        if (MIN_SIZE < 0 || MAX_SIZE <= 0 || MIN_SIZE > MAX_SIZE) {
+            throw new RuntimeException("Invalid connection pool size: min " + MIN_SIZE + ", max " + MAX_SIZE + ".");
+        }
+
+        final ScheduledExecutorService maintenance = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "connection-pool-maintenance");
+            thread.setDaemon(true);
+            return thread;
+        });
+        maintenance.scheduleWithFixedDelay(
+                ConnectionPool::runMaintenance,
+                0,
+                MAINTENANCE_INTERVAL_MS,
+                TimeUnit.MILLISECONDS
+        );
+    }
+
+    @Nonnull
+    public static PooledConnection borrow() throws SQLException {
+        final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(ACQUIRE_TIMEOUT_MS);
+
+        while (true) {
+            PooledConnection pooled = null;
+            boolean create = false;
+
+            LOCK.lock();
+            try {
+                while (IDLE.isEmpty() && totalConnections >= MAX_SIZE) {
+                    final long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        throw new SQLException(
+                                "Timed out after " + ACQUIRE_TIMEOUT_MS + " ms waiting for a database connection ("
+                                + BORROWED.size() + "/" + MAX_SIZE + " in use)."
+                        );
+                    }
+
+                    try {
+                        CONNECTION_RELEASED.awaitNanos(remaining);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new SQLException("Interrupted while waiting for a database connection.", e);
+                    }
+                }
+
+                if (!IDLE.isEmpty()) {
+                    pooled = IDLE.pollFirst();
+                } else {
+                    totalConnections++;
+                    create = true;
+                }
+            } finally {
+                LOCK.unlock();
+            }
+
+            if (create) {
+                pooled = open();
+            } else if (!isAlive(pooled)) {
+                discard(pooled);
+                continue;
+            }
+
+            pooled.markBorrowed();
+            BORROWED.add(pooled);
+            return pooled;
+        }
+    }
+
+    public static void release(@Nonnull PooledConnection pooled) {
+        if (!BORROWED.remove(pooled)) return;
+
+        try {
+            if (pooled.connection.isClosed()) {
+                discard(pooled);
+                return;
+            }
+
+            pooled.resetLeasedStatements();
+
+            if (!pooled.connection.getAutoCommit()) {
+                pooled.connection.rollback();
+                pooled.connection.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            discard(pooled);
+            return;
+        }
+
+        pooled.markReturned();
+
+        LOCK.lock();
+        try {
+            IDLE.addFirst(pooled);
+            CONNECTION_RELEASED.signal();
+        } finally {
+            LOCK.unlock();
+        }
+    }
+
+    public static int getBorrowedConnections() {
+        return BORROWED.size();
+    }
+
+    public static int getIdleConnections() {
+        LOCK.lock();
+        try {
+            return IDLE.size();
+        } finally {
+            LOCK.unlock();
+        }
+    }
+
+    @Nonnull
+    private static PooledConnection open() throws SQLException {
+        try {
+            return new PooledConnection(DriverManager.getConnection(POSTGRES_DB_URL));
+        } catch (SQLException | RuntimeException e) {
+            LOCK.lock();
+            try {
+                totalConnections--;
+                CONNECTION_RELEASED.signal();
+            } finally {
+                LOCK.unlock();
+            }
+            throw e;
+        }
+    }
+
+    private static boolean isAlive(@Nonnull PooledConnection pooled) {
+        if (System.currentTimeMillis() - pooled.lastUsedAt < VALIDATION_BYPASS_MS) return true;
+
+        try {
+            return pooled.connection.isValid(VALIDATION_TIMEOUT_S);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private static void discard(@Nonnull PooledConnection pooled) {
+        pooled.closePhysical();
+
+        LOCK.lock();
+        try {
+            totalConnections--;
+            CONNECTION_RELEASED.signal();
+        } finally {
+            LOCK.unlock();
+        }
+    }
+
+    // An exception escaping a scheduled task cancels every later run, which would stop eviction and refilling for good
+    private static void runMaintenance() {
+        try {
+            evictAndRefill();
+        } catch (RuntimeException e) {
+            Logger.warn("[pool] Maintenance run failed: " + e.getMessage(), e);
+        }
+    }
+
+    private static void evictAndRefill() {
+        final long now = System.currentTimeMillis();
+
+        for (final PooledConnection pooled : BORROWED) {
+            final Exception borrowTrace = pooled.borrowTrace;
+            if (borrowTrace != null && !pooled.leakReported && now - pooled.borrowedAt > LEAK_THRESHOLD_MS) {
+                pooled.leakReported = true;
+                Logger.warn(
+                        "[pool] Connection held for more than " + LEAK_THRESHOLD_MS + " ms, possible leak.",
+                        borrowTrace
+                );
+            }
+        }
+
+        final ArrayDeque<PooledConnection> evicted = new ArrayDeque<>();
+
+        LOCK.lock();
+        try {
+            // Oldest idle connections sit at the tail since releases push to the head
+            final Iterator<PooledConnection> iterator = IDLE.descendingIterator();
+            while (iterator.hasNext() && totalConnections - evicted.size() > MIN_SIZE) {
+                final PooledConnection pooled = iterator.next();
+                if (now - pooled.lastUsedAt < IDLE_TIMEOUT_MS) break;
+
+                iterator.remove();
+                evicted.add(pooled);
+            }
+        } finally {
+            LOCK.unlock();
+        }
+
+        for (final PooledConnection pooled : evicted) {
+            discard(pooled);
+        }
+
+        fillToMinimum();
+    }
+
+    private static void fillToMinimum() {
+        while (true) {
+            LOCK.lock();
+            try {
+                if (totalConnections >= MIN_SIZE) return;
+                totalConnections++;
+            } finally {
+                LOCK.unlock();
+            }
+
+            final PooledConnection pooled;
+            try {
+                pooled = open();
+            } catch (SQLException e) {
+                Logger.warn("[pool] Could not open idle connection: " + e.getMessage());
+                return;
+            }
+
+            pooled.markReturned();
+
+            LOCK.lock();
+            try {
+                IDLE.addLast(pooled);
+                CONNECTION_RELEASED.signal();
+            } finally {
+                LOCK.unlock();
+            }
+        }
+    }
+
+    public static class PooledConnection {
+        public final Connection connection;
+        // Access-ordered so the least recently used statement is the first candidate for eviction
+        private final LinkedHashMap<String, PreparedStatement> statements = new LinkedHashMap<>(16, 0.75f, true);
+        private final Set<PreparedStatement> leasedStatements = Collections.newSetFromMap(new IdentityHashMap<>());
+        private volatile long lastUsedAt;
+        private volatile long borrowedAt;
+        private volatile Exception borrowTrace;
+        private volatile boolean leakReported;
+
+        private PooledConnection(@Nonnull Connection connection) {
+            this.connection = connection;
+            this.lastUsedAt = System.currentTimeMillis();
+        }
+
+        // Only meant for constant SQL, returns null if the statement is already in use by the current lease
+        @Nullable
+        public PreparedStatement prepareCached(@Nonnull String sql) throws SQLException {
+            PreparedStatement statement = this.statements.get(sql);
+
+            if (statement != null) {
+                return this.leasedStatements.add(statement) ? statement : null;
+            }
+
+            statement = this.connection.prepareStatement(sql);
+            // Reused statements are worth a named server-side prepare from their first execution
+            statement.unwrap(PGStatement.class).setPrepareThreshold(1);
+
+            this.statements.put(sql, statement);
+            this.leasedStatements.add(statement);
+            this.evictStatements();
+
+            return statement;
+        }
+
+        private void evictStatements() {
+            final Iterator<PreparedStatement> iterator = this.statements.values().iterator();
+
+            while (this.statements.size() > STATEMENT_CACHE_SIZE && iterator.hasNext()) {
+                final PreparedStatement statement = iterator.next();
+                if (this.leasedStatements.contains(statement)) continue;
+
+                iterator.remove();
+                closeQuietly(statement);
+            }
+        }
+
+        private void resetLeasedStatements() {
+            for (final PreparedStatement statement : this.leasedStatements) {
+                try {
+                    final ResultSet result = statement.getResultSet();
+                    if (result != null) result.close();
+                    statement.clearParameters();
+                } catch (SQLException e) {
+                    this.statements.values().remove(statement);
+                    closeQuietly(statement);
+                }
+            }
+            this.leasedStatements.clear();
+
+            // A lease may have pushed the cache over its size while all its statements were in use
+            this.evictStatements();
+        }
+
+        private void markBorrowed() {
+            this.borrowedAt = System.currentTimeMillis();
+            // Capturing the stack is the expensive part, so a zero threshold disables leak detection entirely
+            this.borrowTrace = LEAK_THRESHOLD_MS > 0
+                    ? new Exception("Connection borrowed by " + Thread.currentThread().getName())
+                    : null;
+            this.leakReported = false;
+        }
+
+        private void markReturned() {
+            this.lastUsedAt = System.currentTimeMillis();
+            this.borrowTrace = null;
+        }
+
+        private void closePhysical() {
+            this.statements.clear();
+            this.leasedStatements.clear();
+
+            try {
+                this.connection.close();
+            } catch (SQLException ignored) {
+            }
+        }
+
+        private static void closeQuietly(@Nonnull Statement statement) {
+            try {
+                statement.close();
+            } catch (SQLException ignored) {
+            }
+        }
+    }
+}
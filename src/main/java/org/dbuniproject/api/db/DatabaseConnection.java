@@ -2,35 +2,264 @@ package org.dbuniproject.api.db;
 
 import jakarta.annotation.Nonnull;
 import jakarta.annotation.Nullable;
-import org.dbuniproject.api.Api;
 import org.dbuniproject.api.Util;
 import org.dbuniproject.api.db.structures.*;
+import org.dbuniproject.api.logging.Logger;
+import org.dbuniproject.api.metrics.Metrics;
 import org.json.JSONArray;
 import org.json.JSONObject;
 
 import java.sql.*;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Objects;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 @SuppressWarnings("DuplicatedCode")
 public class DatabaseConnection implements AutoCloseable {
-    private static final String POSTGRES_DB_URL = Api.DOTENV.get("POSTGRES_DB_URL");
+    // Rows are pulled from the server in batches of this size while the returned stream is consumed
+    private static final int SALES_FETCH_SIZE = 500;
+
+    // Bits describing which optional clauses a search uses, each combination maps to one memoized query shape
+    private static final int SHAPE_NAME = 1;
+    private static final int SHAPE_MIN_PRICE = 1 << 1;
+    private static final int SHAPE_MAX_PRICE = 1 << 2;
+    private static final int SHAPE_TYPES = 1 << 3;
+    private static final int SHAPE_SIZES = 1 << 4;
+    private static final int SHAPE_BRANDS = 1 << 5;
+    private static final int SHAPE_COLORS = 1 << 6;
+    private static final int SHAPE_COMMUNES = 1 << 7;
+    private static final int SHAPE_REGIONS = 1 << 8;
+    private static final int SHAPE_PRODUCTS = 1 << 9;
+    private static final int SHAPE_SORT_PRICE_ASC = 1 << 10;
+    private static final int SHAPE_SORT_PRICE_DESC = 1 << 11;
+    private static final int SHAPE_SORT_NAME_ASC = 1 << 12;
+    private static final int SHAPE_SORT_NAME_DESC = 1 << 13;
+    private static final int SHAPE_AFTER = 1 << 14;
+    private static final int SHAPE_LIMIT = 1 << 15;
+    private static final int SHAPE_COUNT = 1 << 16;
+    private static final int SHAPE_TAX_IN_SQL = 1 << 17;
+
+    private static final ConcurrentHashMap<Integer, ProductsQueryShape> PRODUCTS_QUERY_SHAPES =
+            new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<Integer, SuppliersQueryShape> SUPPLIERS_QUERY_SHAPES =
+            new ConcurrentHashMap<>();
+
+    private final ConnectionPool.PooledConnection pooledConnection;
     private final Connection connection;
+    private final ArrayList<Statement> openStatements = new ArrayList<>();
+    // Shape each statement prepared during this lease is aggregated under in the query stats
+    private final IdentityHashMap<PreparedStatement, QueryStats.Shape> queryShapes = new IdentityHashMap<>();
 
     public DatabaseConnection() throws SQLException {
-        this.connection = DriverManager.getConnection(POSTGRES_DB_URL);
+        this.pooledConnection = ConnectionPool.borrow();
+        this.connection = this.pooledConnection.connection;
     }
 
-    private static void logQuery(String query) {
-        final String now = LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME)
-                .replaceAll("T|\\.\\d+$", " ")
-                .stripTrailing();
+    // Constant SQL goes through the physical connection's statement cache and is reset when the lease ends
+    private PreparedStatement prepareStatement(String sql) throws SQLException {
+        final PreparedStatement cached = this.pooledConnection.prepareCached(sql);
+        if (cached == null) return this.prepareDynamicStatement(sql);
 
-        System.out.println("[" + now + "] Executing query:\n> " + query);
+        this.trackQueryShape(cached, sql);
+        return cached;
+    }
+
+    // SQL built per request would only churn the cache, so these statements are closed with the lease
+    private PreparedStatement prepareDynamicStatement(String sql) throws SQLException {
+        final PreparedStatement statement = this.connection.prepareStatement(sql);
+        this.openStatements.add(statement);
+        this.trackQueryShape(statement, sql);
+        return statement;
+    }
+
+    private void trackQueryShape(PreparedStatement statement, String sql) {
+        final QueryStats.Shape shape = QueryStats.shape(sql);
+        if (shape != null) {
+            this.queryShapes.put(statement, shape);
+        }
+    }
+
+    // Anything not committed is rolled back when the connection goes back to the pool
+    public void beginTransaction() throws SQLException {
+        this.connection.setAutoCommit(false);
+    }
+
+    public void commit() throws SQLException {
+        this.connection.commit();
+        this.connection.setAutoCommit(true);
+    }
+
+    public void rollback() throws SQLException {
+        this.connection.rollback();
+        this.connection.setAutoCommit(true);
+    }
+
+    // Returns false if the migration had already been applied. The advisory lock keeps several instances
+    // starting at once from running the same migration concurrently.
+    boolean applyMigration(@Nonnull String name, @Nonnull String sql) throws SQLException {
+        this.beginTransaction();
+
+        final Statement statement = this.connection.createStatement();
+        this.openStatements.add(statement);
+        statement.execute("SELECT pg_advisory_xact_lock(hashtext('project.api_migracion'))");
+        statement.execute("""
+                CREATE TABLE IF NOT EXISTS project.api_migracion (
+                    nombre TEXT PRIMARY KEY,
+                    fecha TIMESTAMP NOT NULL DEFAULT NOW()
+                )"""
+        );
+
+        final PreparedStatement query = this.prepareStatement(
+                "INSERT INTO project.api_migracion (nombre) VALUES (?) ON CONFLICT DO NOTHING"
+        );
+        query.setString(1, name);
+
+        logQuery(query);
+        if (query.executeUpdate() == 0) {
+            this.rollback();
+            return false;
+        }
+
+        logQuery(sql);
+        statement.execute(sql);
+        this.commit();
+
+        return true;
+    }
+
+    // Takes the statement itself so its potentially expensive toString() only runs when the query is logged
+    private static void logQuery(Object query) {
+        if (!Logger.shouldLog(Logger.Level.DEBUG)) return;
+
+        Logger.log(Logger.Level.DEBUG, "Executing query:\n> " + query);
+    }
+
+    private ResultSet executeQuery(@Nonnull PreparedStatement query) throws SQLException {
+        logQuery(query);
+
+        final QueryStats.Shape shape = this.queryShapes.get(query);
+        final long start = System.nanoTime();
+        try {
+            final ResultSet result = query.executeQuery();
+            return shape != null ? shape.countRows(result) : result;
+        } finally {
+            final long nanos = System.nanoTime() - start;
+            Metrics.recordDatabaseTime(nanos);
+            if (shape != null) shape.record(nanos, query);
+        }
+    }
+
+    private int executeUpdate(@Nonnull PreparedStatement query) throws SQLException {
+        logQuery(query);
+
+        final QueryStats.Shape shape = this.queryShapes.get(query);
+        final long start = System.nanoTime();
+        int updated = 0;
+        try {
+            updated = query.executeUpdate();
+            return updated;
+        } finally {
+            final long nanos = System.nanoTime() - start;
+            Metrics.recordDatabaseTime(nanos);
+            if (shape != null) {
+                shape.addRows(updated);
+                shape.record(nanos, query);
+            }
+        }
+    }
+
+    // With analyze the plan is produced by actually running the query, so that only happens for plain reads and
+    // inside a read only transaction, with a timeout, and always rolled back
+    @Nonnull
+    String explain(@Nonnull String sql, boolean analyze, @Nonnull String statementTimeout) throws SQLException {
+        this.beginTransaction();
+
+        try {
+            final Statement statement = this.connection.createStatement();
+            this.openStatements.add(statement);
+            statement.execute("SET TRANSACTION READ ONLY");
+            statement.execute("SET LOCAL statement_timeout = '" + statementTimeout + "'");
+
+            final ResultSet result = statement.executeQuery(
+                    (analyze ? "EXPLAIN (ANALYZE, BUFFERS) " : "EXPLAIN ") + sql
+            );
+            final StringBuilder plan = new StringBuilder();
+            while (result.next()) {
+                plan.append(result.getString(1)).append('\n');
+            }
+
+            return plan.toString();
+        } finally {
+            this.rollback();
+        }
+    }
+
+    @Nullable
+    public PersistedIdempotentResponse getIdempotentResponse(@Nonnull String key) throws SQLException {
+        final PreparedStatement query = this.prepareStatement("""
+                SELECT huella, estado, tipo, cuerpo, expira
+                    FROM project.api_idempotencia
+                    WHERE clave = ? AND expira > NOW()"""
+        );
+        query.setString(1, key);
+
+        final ResultSet result = this.executeQuery(query);
+
+        return result.next() ? new PersistedIdempotentResponse(
+                new IdempotentResponse(
+                        result.getString("huella"),
+                        result.getInt("estado"),
+                        result.getString("tipo"),
+                        result.getString("cuerpo")
+                ),
+                result.getTimestamp("expira")
+        ) : null;
+    }
+
+    public void saveIdempotentResponse(
+            @Nonnull String key,
+            @Nonnull IdempotentResponse response,
+            @Nonnull Timestamp expiresAt
+    ) throws SQLException {
+        final PreparedStatement query = this.prepareStatement("""
+                INSERT INTO project.api_idempotencia (clave, huella, estado, tipo, cuerpo, expira)
+                    VALUES (?, ?, ?, ?, ?, ?)
+                    ON CONFLICT (clave) DO UPDATE
+                        SET huella = EXCLUDED.huella,
+                            estado = EXCLUDED.estado,
+                            tipo = EXCLUDED.tipo,
+                            cuerpo = EXCLUDED.cuerpo,
+                            expira = EXCLUDED.expira"""
+        );
+        query.setString(1, key);
+        query.setString(2, response.fingerprint());
+        query.setInt(3, response.status());
+        query.setString(4, response.contentType());
+        query.setString(5, response.body());
+        query.setTimestamp(6, expiresAt);
+
+        this.executeUpdate(query);
+    }
+
+    public void deleteExpiredIdempotentResponses() throws SQLException {
+        final PreparedStatement query = this.prepareStatement(
+                "DELETE FROM project.api_idempotencia WHERE expira <= NOW()"
+        );
+
+        this.executeUpdate(query);
     }
 
     public ArrayList<Region> getRegionsWithCommunes() throws SQLException {
@@ -39,53 +268,39 @@ public class DatabaseConnection implements AutoCloseable {
                     FROM project.comuna AS C
                     INNER JOIN project.region AS R ON R.numero = C.region""";
 
-        logQuery(sql);
-        final ResultSet result = connection.createStatement().executeQuery(sql);
+        final ResultSet result = this.executeQuery(this.prepareStatement(sql));
 
-        final ArrayList<Region> regions = new ArrayList<>();
+        final LinkedHashMap<Short, Region> regions = new LinkedHashMap<>();
 
         while (result.next()) {
             final short regionNumber = result.getShort("regionNumber");
             final short communeId = result.getShort("communeId");
             final String communeName = result.getString("communeName");
 
-            boolean addedCommune = false;
-            for (final Region region : regions) {
-                if (region.number() == regionNumber) {
-                    region.addCommune(communeId, communeName);
-                    addedCommune = true;
-                    break;
-                }
+            Region region = regions.get(regionNumber);
+            if (region == null) {
+                region = new Region(regionNumber, result.getString("regionName"), new ArrayList<>());
+                regions.put(regionNumber, region);
             }
 
-            if (!addedCommune) {
-                final Region region = new Region(
-                        regionNumber,
-                        result.getString("regionName"),
-                        new ArrayList<>()
-                );
-                region.addCommune(communeId, communeName);
-                regions.add(region);
-            }
+            region.addCommune(communeId, communeName);
         }
 
-        return regions;
+        return new ArrayList<>(regions.values());
     }
 
     public boolean doesCommuneExist(short id) throws SQLException {
-        final PreparedStatement query = this.connection.prepareStatement("SELECT 1 FROM project.comuna WHERE id = ?");
+        final PreparedStatement query = this.prepareStatement("SELECT 1 FROM project.comuna WHERE id = ?");
         query.setShort(1, id);
 
-        logQuery(query.toString());
-        final ResultSet result = query.executeQuery();
+        final ResultSet result = this.executeQuery(query);
 
         return result.next();
     }
 
     public ArrayList<JSONObject> getProductSizes() throws SQLException {
         final String sql = "SELECT * FROM project.talla";
-        logQuery(sql);
-        final ResultSet result = connection.createStatement().executeQuery(sql);
+        final ResultSet result = this.executeQuery(this.prepareStatement(sql));
 
         final ArrayList<JSONObject> productSizes = new ArrayList<>();
 
@@ -101,11 +316,10 @@ public class DatabaseConnection implements AutoCloseable {
 
     @Nullable
     public JSONObject getProductSize(int id) throws SQLException {
-        final PreparedStatement query = connection.prepareStatement("SELECT * FROM project.talla WHERE id = ?");
+        final PreparedStatement query = this.prepareStatement("SELECT * FROM project.talla WHERE id = ?");
         query.setInt(1, id);
 
-        logQuery(query.toString());
-        final ResultSet result = query.executeQuery();
+        final ResultSet result = this.executeQuery(query);
 
         return result.next()
                 ? new JSONObject()
@@ -116,13 +330,12 @@ public class DatabaseConnection implements AutoCloseable {
 
     @Nullable
     public JSONObject getProductSize(@Nonnull String name) throws SQLException {
-        final PreparedStatement query = connection.prepareStatement(
+        final PreparedStatement query = this.prepareStatement(
                 "SELECT * FROM project.talla WHERE nombre ILIKE '%' || ? || '%'"
         );
         query.setString(1, name.toLowerCase());
 
-        logQuery(query.toString());
-        final ResultSet result = query.executeQuery();
+        final ResultSet result = this.executeQuery(query);
 
         return result.next()
                 ? new JSONObject()
@@ -132,27 +345,25 @@ public class DatabaseConnection implements AutoCloseable {
     }
 
     public boolean doesProductSizeExist(int id) throws SQLException {
-        final PreparedStatement query = connection.prepareStatement("SELECT 1 FROM project.talla WHERE id = ?");
+        final PreparedStatement query = this.prepareStatement("SELECT 1 FROM project.talla WHERE id = ?");
         query.setInt(1, id);
 
-        logQuery(query.toString());
-        final ResultSet result = query.executeQuery();
+        final ResultSet result = this.executeQuery(query);
 
         return result.next();
     }
 
     public void insertProductSize(@Nonnull String name) throws SQLException {
-        final PreparedStatement query = connection.prepareStatement("INSERT INTO project.talla (nombre) VALUES (?)");
+        final PreparedStatement query = this.prepareStatement("INSERT INTO project.talla (nombre) VALUES (?)");
         query.setString(1, name);
 
-        logQuery(query.toString());
-        query.executeUpdate();
+        this.executeUpdate(query);
+        ReferenceDataCache.PRODUCT_SIZES.invalidate();
     }
 
     public ArrayList<JSONObject> getProductTypes() throws SQLException {
         final String sql = "SELECT * FROM project.tipo";
-        logQuery(sql);
-        final ResultSet result = connection.createStatement().executeQuery(sql);
+        final ResultSet result = this.executeQuery(this.prepareStatement(sql));
 
         final ArrayList<JSONObject> productTypes = new ArrayList<>();
 
@@ -169,11 +380,10 @@ public class DatabaseConnection implements AutoCloseable {
 
     @Nullable
     public JSONObject getProductType(int id) throws SQLException {
-        final PreparedStatement query = connection.prepareStatement("SELECT * FROM project.tipo WHERE id = ?");
+        final PreparedStatement query = this.prepareStatement("SELECT * FROM project.tipo WHERE id = ?");
         query.setInt(1, id);
 
-        logQuery(query.toString());
-        final ResultSet result = query.executeQuery();
+        final ResultSet result = this.executeQuery(query);
 
         return result.next()
                 ? new JSONObject()
@@ -185,13 +395,12 @@ public class DatabaseConnection implements AutoCloseable {
 
     @Nullable
     public JSONObject getProductType(@Nonnull String name) throws SQLException {
-        final PreparedStatement query = connection.prepareStatement(
+        final PreparedStatement query = this.prepareStatement(
                 "SELECT * FROM project.tipo WHERE ? LIKE nombre ILIKE '%' || ? || '%'"
         );
         query.setString(1, name.toLowerCase());
 
-        logQuery(query.toString());
-        final ResultSet result = query.executeQuery();
+        final ResultSet result = this.executeQuery(query);
 
         return result.next()
                 ? new JSONObject()
@@ -202,30 +411,28 @@ public class DatabaseConnection implements AutoCloseable {
     }
 
     public boolean doesProductTypeExist(int id) throws SQLException {
-        final PreparedStatement query = connection.prepareStatement("SELECT 1 FROM project.tipo WHERE id = ?");
+        final PreparedStatement query = this.prepareStatement("SELECT 1 FROM project.tipo WHERE id = ?");
         query.setInt(1, id);
 
-        logQuery(query.toString());
-        final ResultSet result = query.executeQuery();
+        final ResultSet result = this.executeQuery(query);
 
         return result.next();
     }
 
     public void insertProductType(@Nonnull String name, @Nonnull String description) throws SQLException {
-        final PreparedStatement query = connection.prepareStatement(
+        final PreparedStatement query = this.prepareStatement(
                 "INSERT INTO project.tipo (nombre, descripcion) VALUES (?, ?)"
         );
         query.setString(1, name);
         query.setString(2, description);
 
-        logQuery(query.toString());
-        query.executeUpdate();
+        this.executeUpdate(query);
+        ReferenceDataCache.PRODUCT_TYPES.invalidate();
     }
 
     public ArrayList<JSONObject> getBrands() throws SQLException {
         final String sql = "SELECT * FROM project.marca";
-        logQuery(sql);
-        final ResultSet result = connection.createStatement().executeQuery(sql);
+        final ResultSet result = this.executeQuery(this.prepareStatement(sql));
 
         final ArrayList<JSONObject> brands = new ArrayList<>();
 
@@ -241,11 +448,10 @@ public class DatabaseConnection implements AutoCloseable {
 
     @Nullable
     public JSONObject getBrand(int id) throws SQLException {
-        final PreparedStatement query = connection.prepareStatement("SELECT * FROM project.marca WHERE id = ?");
+        final PreparedStatement query = this.prepareStatement("SELECT * FROM project.marca WHERE id = ?");
         query.setInt(1, id);
 
-        logQuery(query.toString());
-        final ResultSet result = query.executeQuery();
+        final ResultSet result = this.executeQuery(query);
 
         return result.next()
                 ? new JSONObject()
@@ -256,13 +462,12 @@ public class DatabaseConnection implements AutoCloseable {
 
     @Nullable
     public JSONObject getBrand(@Nonnull String name) throws SQLException {
-        final PreparedStatement query = connection.prepareStatement(
+        final PreparedStatement query = this.prepareStatement(
                 "SELECT * FROM project.marca WHERE ? LIKE nombre ILIKE '%' || ? || '%'"
         );
         query.setString(1, name);
 
-        logQuery(query.toString());
-        final ResultSet result = query.executeQuery();
+        final ResultSet result = this.executeQuery(query);
 
         return result.next()
                 ? new JSONObject()
@@ -272,27 +477,25 @@ public class DatabaseConnection implements AutoCloseable {
     }
 
     public boolean doesBrandExist(int id) throws SQLException {
-        final PreparedStatement query = connection.prepareStatement("SELECT 1 FROM project.marca WHERE id = ?");
+        final PreparedStatement query = this.prepareStatement("SELECT 1 FROM project.marca WHERE id = ?");
         query.setInt(1, id);
 
-        logQuery(query.toString());
-        final ResultSet result = query.executeQuery();
+        final ResultSet result = this.executeQuery(query);
 
         return result.next();
     }
 
     public void insertBrand(@Nonnull String name) throws SQLException {
-        final PreparedStatement query = connection.prepareStatement("INSERT INTO project.marca (nombre) VALUES (?)");
+        final PreparedStatement query = this.prepareStatement("INSERT INTO project.marca (nombre) VALUES (?)");
         query.setString(1, name);
 
-        logQuery(query.toString());
-        query.executeUpdate();
+        this.executeUpdate(query);
+        ReferenceDataCache.BRANDS.invalidate();
     }
 
     public ArrayList<String> getProductColors() throws SQLException {
         final String sql = "SELECT DISTINCT color FROM project.producto ORDER BY color";
-        logQuery(sql);
-        final ResultSet result = connection.createStatement().executeQuery(sql);
+        final ResultSet result = this.executeQuery(this.prepareStatement(sql));
 
         final ArrayList<String> colors = new ArrayList<>();
 
@@ -303,19 +506,112 @@ public class DatabaseConnection implements AutoCloseable {
         return colors;
     }
 
-    public ArrayList<JSONObject> getProducts(
-            @Nullable String name,
-            @Nonnull List<Integer> types,
-            @Nonnull List<Integer> sizes,
-            @Nonnull List<Integer> brands,
-            @Nonnull List<Integer> colors,
-            @Nonnull List<Integer> regions,
-            @Nonnull List<Integer> communes,
-            @Nullable Integer minPrice,
-            @Nullable Integer maxPrice,
+    // A positive limit fetches one extra row, which tells whether there is a next page without a separate count
+    public ProductsPage getProducts(
+            @Nonnull ProductFilter filter,
             @Nullable Boolean sortByNameAsc,
-            @Nullable Boolean sortByPriceAsc
+            @Nullable Boolean sortByPriceAsc,
+            @Nullable ProductCursor after,
+            int limit
     ) throws SQLException {
+        final Parameters parameters = ReferenceDataCache.PARAMETERS.get(this).value();
+
+        int shapeKey = productFilterShapeKey(filter, parameters);
+        if (sortByPriceAsc != null) shapeKey |= sortByPriceAsc ? SHAPE_SORT_PRICE_ASC : SHAPE_SORT_PRICE_DESC;
+        if (sortByNameAsc != null) shapeKey |= sortByNameAsc ? SHAPE_SORT_NAME_ASC : SHAPE_SORT_NAME_DESC;
+        if (after != null) shapeKey |= SHAPE_AFTER;
+        if (limit > 0) shapeKey |= SHAPE_LIMIT;
+
+        final ProductsQueryShape shape = PRODUCTS_QUERY_SHAPES.computeIfAbsent(
+                shapeKey,
+                DatabaseConnection::buildProductsQueryShape
+        );
+
+        final PreparedStatement query = this.prepareStatement(shape.sql);
+        this.bindProductFilter(query, filter, shape, parameters);
+
+        if (after != null) {
+            int argumentPosition = shape.afterArgPosition;
+            for (int i = 0; i < shape.sortKeys.size(); i++) {
+                for (int j = 0; j <= i; j++) {
+                    switch (shape.sortKeys.get(j)) {
+                        case PRICE -> query.setInt(argumentPosition++, after.priceWithoutTax());
+                        case NAME -> query.setString(argumentPosition++, after.name());
+                        case SKU -> query.setLong(argumentPosition++, after.sku());
+                    }
+                }
+            }
+        }
+        if (shape.limitArgPosition != -1) query.setInt(shape.limitArgPosition, limit + 1);
+
+        final ResultSet result = this.executeQuery(query);
+
+        final ArrayList<JSONObject> products = new ArrayList<>();
+        ProductCursor nextCursor = null;
+        int lastPriceWithoutTax = 0;
+
+        while (result.next()) {
+            // The untaxed price only goes into the cursor, the response keeps its original shape
+            if (limit > 0 && products.size() == limit) {
+                final JSONObject last = products.get(limit - 1);
+                nextCursor = new ProductCursor(
+                        ProductCursor.sortKey(sortByNameAsc, sortByPriceAsc),
+                        lastPriceWithoutTax,
+                        last.getString("name"),
+                        last.getLong("sku")
+                );
+                break;
+            }
+
+            final int priceWithoutTax = result.getInt("priceWithoutTax");
+            lastPriceWithoutTax = priceWithoutTax;
+            products.add(new JSONObject()
+                    .put("sku", result.getLong("sku"))
+                    .put("name", result.getString("name"))
+                    .put("brand", result.getString("brand"))
+                    .put("color", Util.intColorToHexString(result.getInt("color")))
+                    .put("price", parameters.taxedInApi()
+                            ? parameters.applyTax(priceWithoutTax)
+                            : result.getInt("price")
+                    )
+                    .put("available", result.getBoolean("available"))
+            );
+        }
+
+        return new ProductsPage(products, nextCursor);
+    }
+
+    public long countProducts(@Nonnull ProductFilter filter) throws SQLException {
+        final Parameters parameters = ReferenceDataCache.PARAMETERS.get(this).value();
+        final ProductsQueryShape shape = PRODUCTS_QUERY_SHAPES.computeIfAbsent(
+                productFilterShapeKey(filter, parameters) | SHAPE_COUNT,
+                DatabaseConnection::buildProductsQueryShape
+        );
+
+        final PreparedStatement query = this.prepareStatement(shape.sql);
+        this.bindProductFilter(query, filter, shape, parameters);
+
+        final ResultSet result = this.executeQuery(query);
+        result.next();
+
+        return result.getLong(1);
+    }
+
+    private static int productFilterShapeKey(@Nonnull ProductFilter filter, @Nonnull Parameters parameters) {
+        int shapeKey = parameters.taxedInApi() ? 0 : SHAPE_TAX_IN_SQL;
+        if (filter.name() != null && !filter.name().isEmpty()) shapeKey |= SHAPE_NAME;
+        if (filter.minPrice() != null) shapeKey |= SHAPE_MIN_PRICE;
+        if (filter.maxPrice() != null) shapeKey |= SHAPE_MAX_PRICE;
+        if (!filter.types().isEmpty()) shapeKey |= SHAPE_TYPES;
+        if (!filter.sizes().isEmpty()) shapeKey |= SHAPE_SIZES;
+        if (!filter.brands().isEmpty()) shapeKey |= SHAPE_BRANDS;
+        if (!filter.colors().isEmpty()) shapeKey |= SHAPE_COLORS;
+        if (!filter.communes().isEmpty()) shapeKey |= SHAPE_COMMUNES;
+        if (!filter.regions().isEmpty()) shapeKey |= SHAPE_REGIONS;
+        return shapeKey;
+    }
+
+    private static ProductsQueryShape buildProductsQueryShape(int shapeKey) {
         final AtomicInteger argumentCounter = new AtomicInteger(1);
         int nameArgPosition = -1;
         int minPriceArgPosition = -1;
@@ -326,129 +622,201 @@ public class DatabaseConnection implements AutoCloseable {
         int colorsArgPosition = -1;
         int communesArgPosition = -1;
         int regionsArgPosition = -1;
+        int afterArgPosition = -1;
+        int limitArgPosition = -1;
+
+        // The sku always comes last so every row has a unique position in the ordering
+        final ArrayList<ProductSortKey> sortKeys = new ArrayList<>();
+        final ArrayList<Boolean> sortAscending = new ArrayList<>();
+        if ((shapeKey & (SHAPE_SORT_PRICE_ASC | SHAPE_SORT_PRICE_DESC)) != 0) {
+            sortKeys.add(ProductSortKey.PRICE);
+            sortAscending.add((shapeKey & SHAPE_SORT_PRICE_ASC) != 0);
+        }
+        if ((shapeKey & (SHAPE_SORT_NAME_ASC | SHAPE_SORT_NAME_DESC)) != 0) {
+            sortKeys.add(ProductSortKey.NAME);
+            sortAscending.add((shapeKey & SHAPE_SORT_NAME_ASC) != 0);
+        }
+        sortKeys.add(ProductSortKey.SKU);
+        sortAscending.add(true);
 
         @SuppressWarnings("SqlShouldBeInGroupBy")
-        String sql = """
+        String sql = (shapeKey & SHAPE_COUNT) != 0 ? "SELECT COUNT(DISTINCT P.sku)" : """
                 SELECT
                     P.sku,
                     P.nombre AS name,
                     M.nombre AS brand,
                     P.color,
-                    project.aplicar_iva(P.precio_sin_iva) AS price,
-                    SUM(ST.actual + ST.bodega) > 0 AS available
-                    FROM project.Producto AS P
-                    INNER JOIN project.Stock AS ST ON ST.sku_producto = P.sku
-                    INNER JOIN project.Marca AS M ON M.id = P.id_marca""";
+                    P.precio_sin_iva AS priceWithoutTax,
+                    SUM(ST.actual + ST.bodega) > 0 AS available""";
+
+        // Taxing is only done here while the API's arithmetic disagrees with project.aplicar_iva
+        final boolean taxInSql = (shapeKey & SHAPE_TAX_IN_SQL) != 0;
+        if (taxInSql && (shapeKey & SHAPE_COUNT) == 0) {
+            sql += ",\n    project.aplicar_iva(P.precio_sin_iva) AS price";
+        }
 
-        if (!communes.isEmpty() || !regions.isEmpty()) {
+        sql += "\n    FROM project.Producto AS P";
+        sql += "\n    INNER JOIN project.Stock AS ST ON ST.sku_producto = P.sku";
+        sql += "\n    INNER JOIN project.Marca AS M ON M.id = P.id_marca";
+
+        if ((shapeKey & (SHAPE_COMMUNES | SHAPE_REGIONS)) != 0) {
             sql += "\n    INNER JOIN project.Sucursal AS SU ON SU.id = ST.id_sucursal";
             sql += "\n    INNER JOIN project.Comuna as C ON C.id = SU.id_comuna";
         }
 
-        if (!regions.isEmpty()) {
+        if ((shapeKey & SHAPE_REGIONS) != 0) {
             sql += "\n    INNER JOIN project.Region as R ON R.numero = C.region";
         }
 
         sql += "\n    WHERE P.eliminado = FALSE";
 
-        if (name != null && !name.isEmpty()) {
+        if ((shapeKey & SHAPE_NAME) != 0) {
             sql += "\n    AND P.nombre ILIKE '%' || ? || '%'";
             nameArgPosition = argumentCounter.getAndIncrement();
         }
-        if (minPrice != null) {
-            sql += "\n    AND project.aplicar_iva(P.precio_sin_iva) >= ?";
+        if ((shapeKey & SHAPE_MIN_PRICE) != 0) {
+            sql += taxInSql
+                    ? "\n    AND project.aplicar_iva(P.precio_sin_iva) >= ?"
+                    : "\n    AND P.precio_sin_iva >= ?";
             minPriceArgPosition = argumentCounter.getAndIncrement();
         }
-        if (maxPrice != null) {
-            sql += "\n    AND project.aplicar_iva(P.precio_sin_iva) <= ?";
+        if ((shapeKey & SHAPE_MAX_PRICE) != 0) {
+            sql += taxInSql
+                    ? "\n    AND project.aplicar_iva(P.precio_sin_iva) <= ?"
+                    : "\n    AND P.precio_sin_iva <= ?";
             maxPriceArgPosition = argumentCounter.getAndIncrement();
         }
-        if (!types.isEmpty()) {
+        if ((shapeKey & SHAPE_TYPES) != 0) {
             sql += "\n    AND P.id_tipo = ANY (?)";
             typesArgPosition = argumentCounter.getAndIncrement();
         }
-        if (!sizes.isEmpty()) {
+        if ((shapeKey & SHAPE_SIZES) != 0) {
             sql += "\n    AND P.id_talla = ANY (?)";
             sizesArgPosition = argumentCounter.getAndIncrement();
         }
-        if (!brands.isEmpty()) {
+        if ((shapeKey & SHAPE_BRANDS) != 0) {
             sql += "\n    AND P.id_marca = ANY (?)";
             brandsArgPosition = argumentCounter.getAndIncrement();
         }
-        if (!colors.isEmpty()) {
+        if ((shapeKey & SHAPE_COLORS) != 0) {
             sql += "\n    AND P.color = ANY (?)";
             colorsArgPosition = argumentCounter.getAndIncrement();
         }
-        if (!communes.isEmpty()) {
+        if ((shapeKey & SHAPE_COMMUNES) != 0) {
             sql += "\n    AND C.id = ANY (?)";
             communesArgPosition = argumentCounter.getAndIncrement();
         }
-        if (!regions.isEmpty()) {
+        if ((shapeKey & SHAPE_REGIONS) != 0) {
             sql += "\n    AND R.numero = ANY (?)";
             regionsArgPosition = argumentCounter.getAndIncrement();
         }
 
-        sql += "\n    GROUP BY P.sku, P.nombre, M.nombre, P.color, P.precio_sin_iva";
+        if ((shapeKey & SHAPE_AFTER) != 0) {
+            // Expanded form of (k1, k2, ...) > (v1, v2, ...) that honours a direction per key
+            final ArrayList<String> alternatives = new ArrayList<>();
+            for (int i = 0; i < sortKeys.size(); i++) {
+                final ArrayList<String> conditions = new ArrayList<>();
+                for (int j = 0; j < i; j++) {
+                    conditions.add(sortKeys.get(j).expression + " = ?");
+                }
+                conditions.add(sortKeys.get(i).expression + (sortAscending.get(i) ? " > ?" : " < ?"));
+                alternatives.add("(" + String.join(" AND ", conditions) + ")");
+            }
 
-        if (sortByNameAsc != null || sortByPriceAsc != null) {
-            final ArrayList<String> sorts = new ArrayList<>();
-            if (sortByPriceAsc != null) sorts.add("P.precio_sin_iva " + (sortByPriceAsc ? "ASC" : "DESC"));
-            if (sortByNameAsc != null) sorts.add("P.nombre " + (sortByNameAsc ? "ASC" : "DESC"));
+            sql += "\n    AND (" + String.join(" OR ", alternatives) + ")";
+            afterArgPosition = argumentCounter.getAndAdd(sortKeys.size() * (sortKeys.size() + 1) / 2);
+        }
+
+        if ((shapeKey & SHAPE_COUNT) == 0) {
+            sql += "\n    GROUP BY P.sku, P.nombre, M.nombre, P.color, P.precio_sin_iva";
 
+            final ArrayList<String> sorts = new ArrayList<>();
+            for (int i = 0; i < sortKeys.size(); i++) {
+                sorts.add(sortKeys.get(i).expression + (sortAscending.get(i) ? " ASC" : " DESC"));
+            }
             sql += "\n    ORDER BY " + String.join(", ", sorts);
         }
 
-        final PreparedStatement query = connection.prepareStatement(sql);
+        if ((shapeKey & SHAPE_LIMIT) != 0) {
+            sql += "\n    LIMIT ?";
+            limitArgPosition = argumentCounter.getAndIncrement();
+        }
+
+        return new ProductsQueryShape(
+                sql,
+                nameArgPosition,
+                minPriceArgPosition,
+                maxPriceArgPosition,
+                typesArgPosition,
+                sizesArgPosition,
+                brandsArgPosition,
+                colorsArgPosition,
+                communesArgPosition,
+                regionsArgPosition,
+                afterArgPosition,
+                limitArgPosition,
+                List.copyOf(sortKeys)
+        );
+    }
 
-        if (nameArgPosition != -1) query.setString(nameArgPosition, name.toLowerCase());
-        if (minPriceArgPosition != -1) query.setInt(minPriceArgPosition, minPrice);
-        if (maxPriceArgPosition != -1) query.setInt(maxPriceArgPosition, maxPrice);
-        if (typesArgPosition != -1) {
-            query.setArray(typesArgPosition, this.connection.createArrayOf("INT", types.toArray()));
+    private void bindProductFilter(
+            @Nonnull PreparedStatement query,
+            @Nonnull ProductFilter filter,
+            @Nonnull ProductsQueryShape shape,
+            @Nonnull Parameters parameters
+    ) throws SQLException {
+        if (shape.nameArgPosition != -1) {
+            query.setString(shape.nameArgPosition, Objects.requireNonNull(filter.name()).toLowerCase());
         }
-        if (sizesArgPosition != -1) {
-            query.setArray(sizesArgPosition, this.connection.createArrayOf("INT", sizes.toArray()));
+        if (shape.minPriceArgPosition != -1) {
+            final int minPrice = Objects.requireNonNull(filter.minPrice());
+            query.setInt(
+                    shape.minPriceArgPosition,
+                    parameters.taxedInApi() ? parameters.lowestPriceWithoutTax(minPrice) : minPrice
+            );
         }
-        if (brandsArgPosition != -1) {
-            query.setArray(brandsArgPosition, this.connection.createArrayOf("INT", brands.toArray()));
+        if (shape.maxPriceArgPosition != -1) {
+            final int maxPrice = Objects.requireNonNull(filter.maxPrice());
+            query.setInt(
+                    shape.maxPriceArgPosition,
+                    parameters.taxedInApi() ? parameters.highestPriceWithoutTax(maxPrice) : maxPrice
+            );
         }
-        if (colorsArgPosition != -1) {
-            query.setArray(colorsArgPosition, this.connection.createArrayOf("INT", colors.toArray()));
+        if (shape.typesArgPosition != -1) {
+            query.setArray(shape.typesArgPosition, this.connection.createArrayOf("INT", filter.types().toArray()));
         }
-        if (communesArgPosition != -1) {
-            query.setArray(communesArgPosition, this.connection.createArrayOf("INT", communes.toArray()));
+        if (shape.sizesArgPosition != -1) {
+            query.setArray(shape.sizesArgPosition, this.connection.createArrayOf("INT", filter.sizes().toArray()));
         }
-        if (regionsArgPosition != -1) {
-            query.setArray(regionsArgPosition, this.connection.createArrayOf("INT", regions.toArray()));
+        if (shape.brandsArgPosition != -1) {
+            query.setArray(shape.brandsArgPosition, this.connection.createArrayOf("INT", filter.brands().toArray()));
         }
-
-        logQuery(query.toString());
-        final ResultSet result = query.executeQuery();
-
-        final ArrayList<JSONObject> products = new ArrayList<>();
-
-        while (result.next()) {
-            products.add(new JSONObject()
-                    .put("sku", result.getLong("sku"))
-                    .put("name", result.getString("name"))
-                    .put("brand", result.getString("brand"))
-                    .put("color", Util.intColorToHexString(result.getInt("color")))
-                    .put("price", result.getInt("price"))
-                    .put("available", result.getBoolean("available"))
+        if (shape.colorsArgPosition != -1) {
+            query.setArray(shape.colorsArgPosition, this.connection.createArrayOf("INT", filter.colors().toArray()));
+        }
+        if (shape.communesArgPosition != -1) {
+            query.setArray(
+                    shape.communesArgPosition,
+                    this.connection.createArrayOf("INT", filter.communes().toArray())
             );
         }
-
-        return products;
+        if (shape.regionsArgPosition != -1) {
+            query.setArray(shape.regionsArgPosition, this.connection.createArrayOf("INT", filter.regions().toArray()));
+        }
     }
 
     public ArrayList<JSONObject> getProductsByEmployee(@Nonnull String rut) throws SQLException {
-        final PreparedStatement query = this.connection.prepareStatement("""
+        final Parameters parameters = ReferenceDataCache.PARAMETERS.get(this).value();
+
+        // Taxing is only done here while the API's arithmetic disagrees with project.aplicar_iva
+        final PreparedStatement query = this.prepareStatement("""
                 SELECT
                     P.sku,
                     P.nombre AS name,
                     P.descripcion AS description,
                     P.color AS color,
-                    project.aplicar_iva(P.precio_sin_iva) AS price,
+                    P.precio_sin_iva AS priceWithoutTax,
+                    CASE WHEN ? THEN project.aplicar_iva(P.precio_sin_iva) END AS price,
                     TI.nombre AS type,
                     TA.nombre AS size,
                     M.nombre AS brand,
@@ -461,18 +829,14 @@ public class DatabaseConnection implements AutoCloseable {
                     INNER JOIN project.talla AS TA ON TA.id = P.id_talla
                     INNER JOIN project.marca AS M ON M.id = P.id_marca
                     INNER JOIN project.stock AS ST ON P.sku = ST.sku_producto
-                    INNER JOIN project.sucursal AS SU ON SU.id = ST.id_sucursal
-                    INNER JOIN (
-                        SELECT rut, id_sucursal FROM project.gerente
-                        UNION SELECT rut, id_sucursal FROM project.vendedor
-                    ) AS E ON SU.id = E.id_sucursal
-                    WHERE P.eliminado = FALSE AND E.rut = ?
+                    WHERE P.eliminado = FALSE
+                        AND ST.id_sucursal = (SELECT id_sucursal FROM project.empleado WHERE rut = ?)
                     ORDER BY P.nombre, P.precio_sin_iva DESC"""
         );
-        query.setString(1, rut);
+        query.setBoolean(1, !parameters.taxedInApi());
+        query.setString(2, rut);
 
-        logQuery(query.toString());
-        final ResultSet result = query.executeQuery();
+        final ResultSet result = this.executeQuery(query);
 
         final ArrayList<JSONObject> products = new ArrayList<>();
 
@@ -482,7 +846,10 @@ public class DatabaseConnection implements AutoCloseable {
                     .put("name", result.getString("name"))
                     .put("description", result.getString("description"))
                     .put("color", Util.intColorToHexString(result.getInt("color")))
-                    .put("price", result.getInt("price"))
+                    .put("price", parameters.taxedInApi()
+                            ? parameters.applyTax(result.getInt("priceWithoutTax"))
+                            : result.getInt("price")
+                    )
                     .put("type", result.getString("type"))
                     .put("size", result.getString("size"))
                     .put("brand", result.getString("brand"))
@@ -498,7 +865,7 @@ public class DatabaseConnection implements AutoCloseable {
 
     @Nullable
     public JSONObject getProduct(long sku) throws SQLException {
-        final PreparedStatement query = connection.prepareStatement("""
+        final PreparedStatement query = this.prepareStatement("""
                 SELECT
                      P.nombre AS name,
                      P.descripcion AS description,
@@ -515,8 +882,7 @@ public class DatabaseConnection implements AutoCloseable {
         );
         query.setLong(1, sku);
 
-        logQuery(query.toString());
-        final ResultSet result = query.executeQuery();
+        final ResultSet result = this.executeQuery(query);
 
         return result.next() ? new JSONObject()
                 .put("name", result.getString("name"))
@@ -531,19 +897,18 @@ public class DatabaseConnection implements AutoCloseable {
 
     @SuppressWarnings("BooleanMethodIsAlwaysInverted")
     public boolean doesProductExist(long sku) throws SQLException {
-        final PreparedStatement query = this.connection.prepareStatement(
+        final PreparedStatement query = this.prepareStatement(
                 "SELECT 1 FROM project.producto WHERE sku = ? AND eliminado = FALSE"
         );
         query.setLong(1, sku);
 
-        logQuery(query.toString());
-        final ResultSet result = query.executeQuery();
+        final ResultSet result = this.executeQuery(query);
 
         return result.next();
     }
 
     public long insertProduct(@Nonnull Product product) throws SQLException {
-        final PreparedStatement query = this.connection.prepareStatement(
+        final PreparedStatement query = this.prepareStatement(
                 "SELECT project.crear_producto(?, ?, ?, ?, ?, ?, ?, ?, ?, ?);"
         );
 
@@ -559,36 +924,68 @@ public class DatabaseConnection implements AutoCloseable {
         query.setInt(9, product.minStock());
         query.setInt(10, product.maxStock());
 
-        logQuery(query.toString());
-        final ResultSet result = query.executeQuery();
+        final ResultSet result = this.executeQuery(query);
         result.next();
+        ReferenceDataCache.PRODUCT_COLORS.invalidate();
 
         return result.getLong(1);
     }
 
     public boolean isProductSoldAtEmployeeStore(long sku, @Nonnull String rut) throws SQLException {
-        final PreparedStatement query = this.connection.prepareStatement("""
+        final PreparedStatement query = this.prepareStatement("""
                 SELECT 1
                     FROM project.producto AS P
                     INNER JOIN project.stock AS ST ON P.sku = ST.sku_producto
-                    INNER JOIN project.sucursal AS SU ON SU.id = ST.id_sucursal
-                    INNER JOIN (
-                        SELECT rut, id_sucursal FROM project.gerente
-                        UNION SELECT rut, id_sucursal FROM project.vendedor
-                    ) AS E ON SU.id = E.id_sucursal
-                    WHERE P.eliminado = FALSE AND P.sku = ? AND E.rut = ?"""
+                    WHERE P.eliminado = FALSE AND P.sku = ?
+                        AND ST.id_sucursal = (SELECT id_sucursal FROM project.empleado WHERE rut = ?)"""
         );
         query.setLong(1, sku);
         query.setString(2, rut);
 
-        logQuery(query.toString());
-        final ResultSet result = query.executeQuery();
+        final ResultSet result = this.executeQuery(query);
 
         return result.next();
     }
 
+    public ArrayList<ProductSaleAvailability> getProductSaleAvailability(
+            @Nonnull String cashierRut,
+            @Nonnull List<ProductSale> products
+    ) throws SQLException {
+        final PreparedStatement query = this.prepareStatement("""
+                SELECT
+                    L.sku,
+                    P.sku IS NOT NULL AS productExists,
+                    ST.sku_producto IS NOT NULL AS soldAtStore,
+                    COALESCE(ST.actual + ST.bodega, -1) AS stock
+                    FROM UNNEST(?::BIGINT[]) WITH ORDINALITY AS L(sku, line)
+                    LEFT JOIN project.producto AS P ON P.sku = L.sku AND P.eliminado = FALSE
+                    LEFT JOIN project.stock AS ST ON ST.sku_producto = P.sku
+                        AND ST.id_sucursal = (SELECT id_sucursal FROM project.vendedor WHERE rut = ?)
+                    ORDER BY L.line"""
+        );
+        query.setArray(1, this.connection.createArrayOf(
+                "BIGINT", products.stream().map(ProductSale::sku).toArray()
+        ));
+        query.setString(2, cashierRut);
+
+        final ResultSet result = this.executeQuery(query);
+
+        final ArrayList<ProductSaleAvailability> availability = new ArrayList<>();
+
+        while (result.next()) {
+            availability.add(new ProductSaleAvailability(
+                    result.getLong("sku"),
+                    result.getBoolean("productExists"),
+                    result.getBoolean("soldAtStore"),
+                    result.getInt("stock")
+            ));
+        }
+
+        return availability;
+    }
+
     public ArrayList<JSONObject> getProductStocks(long sku) throws SQLException {
-        final PreparedStatement query = this.connection.prepareStatement("""
+        final PreparedStatement query = this.prepareStatement("""
                 SELECT
                     SU.id AS storeId,
                     SU.nombre AS storeName,
@@ -599,8 +996,7 @@ public class DatabaseConnection implements AutoCloseable {
         );
         query.setLong(1, sku);
 
-        logQuery(query.toString());
-        final ResultSet result = query.executeQuery();
+        final ResultSet result = this.executeQuery(query);
 
         final ArrayList<JSONObject> stocks = new ArrayList<>();
 
@@ -615,9 +1011,91 @@ public class DatabaseConnection implements AutoCloseable {
         return stocks;
     }
 
+    // Absolute values replace the stored ones when present, deltas are added on top. The constraints are checked
+    // by the UPDATE itself against the latest row version, so concurrent adjustments never overwrite each other.
     @Nullable
-    public ProductStock getProductStock(long sku, @Nonnull String employeeRut) throws SQLException {
-        final PreparedStatement query = this.connection.prepareStatement("""
+    public StockAdjustmentResult adjustProductStock(
+            @Nonnull String managerRut,
+            long sku,
+            @Nullable Integer min,
+            @Nullable Integer max,
+            @Nullable Integer forSale,
+            @Nullable Integer inStorage,
+            int forSaleDelta,
+            int inStorageDelta
+    ) throws SQLException {
+        final PreparedStatement query = this.prepareStatement("""
+                WITH I AS (
+                    SELECT
+                        ?::BIGINT AS sku,
+                        ?::TEXT AS rut,
+                        ?::INT AS min,
+                        ?::INT AS max,
+                        ?::INT AS forSale,
+                        ?::INT AS inStorage,
+                        ?::INT AS forSaleDelta,
+                        ?::INT AS inStorageDelta
+                ), T AS (
+                    SELECT ST.sku_producto, ST.id_sucursal, ST.min, ST.max, ST.actual, ST.bodega
+                        FROM I
+                        INNER JOIN project.gerente AS G ON G.rut = I.rut
+                        INNER JOIN project.stock AS ST ON ST.id_sucursal = G.id_sucursal AND ST.sku_producto = I.sku
+                        INNER JOIN project.producto AS P ON P.sku = ST.sku_producto
+                        WHERE P.eliminado = FALSE
+                ), U AS (
+                    UPDATE project.stock AS ST
+                        SET min = COALESCE(I.min, ST.min),
+                            max = COALESCE(I.max, ST.max),
+                            actual = COALESCE(I.forSale, ST.actual) + I.forSaleDelta,
+                            bodega = COALESCE(I.inStorage, ST.bodega) + I.inStorageDelta
+                        FROM T, I
+                        WHERE ST.sku_producto = T.sku_producto AND ST.id_sucursal = T.id_sucursal
+                            AND COALESCE(I.max, ST.max) > COALESCE(I.min, ST.min)
+                            AND COALESCE(I.forSale, ST.actual) + I.forSaleDelta >= 0
+                            AND COALESCE(I.inStorage, ST.bodega) + I.inStorageDelta >= 0
+                        RETURNING ST.min, ST.max, ST.actual, ST.bodega
+                )
+                SELECT
+                    T.sku_producto AS productSku,
+                    T.id_sucursal AS storeId,
+                    U.actual IS NOT NULL AS applied,
+                    COALESCE(U.min, T.min) AS min,
+                    COALESCE(U.max, T.max) AS max,
+                    COALESCE(U.actual, T.actual) AS forSale,
+                    COALESCE(U.bodega, T.bodega) AS inStorage
+                    FROM T
+                    LEFT JOIN U ON TRUE"""
+        );
+        query.setLong(1, sku);
+        query.setString(2, managerRut);
+        query.setObject(3, min, Types.INTEGER);
+        query.setObject(4, max, Types.INTEGER);
+        query.setObject(5, forSale, Types.INTEGER);
+        query.setObject(6, inStorage, Types.INTEGER);
+        query.setInt(7, forSaleDelta);
+        query.setInt(8, inStorageDelta);
+
+        final ResultSet result = this.executeQuery(query);
+
+        return result.next() ? new StockAdjustmentResult(
+                result.getBoolean("applied"),
+                new ProductStock(
+                        result.getLong("productSku"),
+                        result.getInt("storeId"),
+                        result.getInt("min"),
+                        result.getInt("max"),
+                        result.getInt("forSale"),
+                        result.getInt("inStorage")
+                )
+        ) : null;
+    }
+
+    // Locks the rows in sku order so concurrent bulk updates cannot deadlock each other
+    public HashMap<Long, ProductStock> getProductStocksForUpdate(
+            @Nonnull List<Long> skus,
+            int storeId
+    ) throws SQLException {
+        final PreparedStatement query = this.prepareStatement("""
                 SELECT
                     ST.sku_producto AS productSku,
                     ST.id_sucursal AS storeId,
@@ -625,43 +1103,59 @@ public class DatabaseConnection implements AutoCloseable {
                     ST.max,
                     ST.actual AS forSale,
                     ST.bodega AS inStorage
-                    FROM (SELECT rut, id_sucursal FROM project.vendedor
-                        UNION SELECT rut, id_sucursal FROM project.gerente
-                    ) AS E
-                    INNER JOIN project.stock AS ST on ST.id_sucursal = E.id_sucursal
-                    WHERE ST.sku_producto = ? AND E.rut = ?"""
+                    FROM project.stock AS ST
+                    INNER JOIN project.producto AS P ON P.sku = ST.sku_producto
+                    WHERE ST.sku_producto = ANY (?) AND ST.id_sucursal = ? AND P.eliminado = FALSE
+                    ORDER BY ST.sku_producto
+                    FOR UPDATE OF ST"""
         );
-        query.setLong(1, sku);
-        query.setString(2, employeeRut);
-
-        logQuery(query.toString());
-        final ResultSet result = query.executeQuery();
-
-        return result.next() ? new ProductStock(
-                result.getLong("productSku"),
-                result.getInt("storeId"),
-                result.getInt("min"),
-                result.getInt("max"),
-                result.getInt("forSale"),
-                result.getInt("inStorage")
-        ) : null;
+        query.setArray(1, this.connection.createArrayOf("BIGINT", skus.toArray()));
+        query.setInt(2, storeId);
+
+        final ResultSet result = this.executeQuery(query);
+
+        final HashMap<Long, ProductStock> stocks = new HashMap<>();
+
+        while (result.next()) {
+            final ProductStock stock = new ProductStock(
+                    result.getLong("productSku"),
+                    result.getInt("storeId"),
+                    result.getInt("min"),
+                    result.getInt("max"),
+                    result.getInt("forSale"),
+                    result.getInt("inStorage")
+            );
+            stocks.put(stock.productSku, stock);
+        }
+
+        return stocks;
     }
 
-    public void updateProductStock(@Nonnull ProductStock stock) throws SQLException {
-        final PreparedStatement query = this.connection.prepareStatement("""
-                UPDATE project.stock
-                    SET min = ?, max = ?, actual = ?, bodega = ?
-                    WHERE sku_producto = ? AND id_sucursal = ?;"""
-        );
-        query.setInt(1, stock.min);
-        query.setInt(2, stock.max);
-        query.setInt(3, stock.forSale);
-        query.setInt(4, stock.inStorage);
-        query.setLong(5, stock.productSku);
-        query.setInt(6, stock.storeId);
+    // Applies every row in a single statement, the caller decides the transaction around it
+    public int updateProductStocks(@Nonnull List<ProductStock> stocks, int storeId) throws SQLException {
+        if (stocks.isEmpty()) return 0;
 
-        logQuery(query.toString());
-        query.executeUpdate();
+        final PreparedStatement query = this.prepareStatement("""
+                UPDATE project.stock AS ST
+                    SET min = V.min, max = V.max, actual = V.forSale, bodega = V.inStorage
+                    FROM UNNEST(?::BIGINT[], ?::INT[], ?::INT[], ?::INT[], ?::INT[])
+                        AS V(sku, min, max, forSale, inStorage)
+                    WHERE ST.sku_producto = V.sku AND ST.id_sucursal = ?"""
+        );
+        query.setArray(1, this.connection.createArrayOf(
+                "BIGINT", stocks.stream().map(stock -> stock.productSku).toArray()
+        ));
+        query.setArray(2, this.connection.createArrayOf("INT", stocks.stream().map(stock -> stock.min).toArray()));
+        query.setArray(3, this.connection.createArrayOf("INT", stocks.stream().map(stock -> stock.max).toArray()));
+        query.setArray(4, this.connection.createArrayOf(
+                "INT", stocks.stream().map(stock -> stock.forSale).toArray()
+        ));
+        query.setArray(5, this.connection.createArrayOf(
+                "INT", stocks.stream().map(stock -> stock.inStorage).toArray()
+        ));
+        query.setInt(6, storeId);
+
+        return this.executeUpdate(query);
     }
 
     public ArrayList<JSONObject> getStores() throws SQLException {
@@ -674,8 +1168,7 @@ public class DatabaseConnection implements AutoCloseable {
                     C.nombre AS commune
                     FROM project.sucursal AS S
                     INNER JOIN project.comuna AS C ON C.id = S.id_comuna""";
-        logQuery(sql);
-        final ResultSet result = this.connection.createStatement().executeQuery(sql);
+        final ResultSet result = this.executeQuery(this.prepareStatement(sql));
 
         final ArrayList<JSONObject> stores = new ArrayList<>();
 
@@ -694,7 +1187,7 @@ public class DatabaseConnection implements AutoCloseable {
 
     @Nullable
     public JSONObject getStore(int id) throws SQLException {
-        final PreparedStatement query = this.connection.prepareStatement("""
+        final PreparedStatement query = this.prepareStatement("""
                 SELECT
                     S.id,
                     S.nombre AS name,
@@ -707,8 +1200,7 @@ public class DatabaseConnection implements AutoCloseable {
         );
         query.setInt(1, id);
 
-        logQuery(query.toString());
-        final ResultSet result = query.executeQuery();
+        final ResultSet result = this.executeQuery(query);
 
         return result.next()
                 ? new JSONObject()
@@ -722,19 +1214,16 @@ public class DatabaseConnection implements AutoCloseable {
 
     @Nullable
     public EmployeeCredentials getEmployeeCredentials(@Nonnull String rut) throws SQLException {
-        final PreparedStatement query = this.connection.prepareStatement("""
+        final PreparedStatement query = this.prepareStatement("""
                 SELECT
                     contraseña AS password,
                     salt
-                    FROM (SELECT rut, contraseña, salt FROM project.gerente
-                        UNION SELECT rut, contraseña, salt FROM project.vendedor WHERE despedido = FALSE
-                    ) AS E
-                    WHERE E.rut = ?"""
+                    FROM project.empleado
+                    WHERE rut = ? AND despedido = FALSE"""
         );
         query.setString(1, rut);
 
-        logQuery(query.toString());
-        final ResultSet result = query.executeQuery();
+        final ResultSet result = this.executeQuery(query);
 
         return result.next() ? new EmployeeCredentials(
                 result.getString("password"),
@@ -743,53 +1232,48 @@ public class DatabaseConnection implements AutoCloseable {
     }
 
     public boolean doesEmployeeExist(@Nonnull String rut, @Nonnull String email, int phone) throws SQLException {
-        final PreparedStatement query = this.connection.prepareStatement("""
-                SELECT 1 FROM (
-                    SELECT rut, email, telefono FROM project.gerente
-                    UNION SELECT rut, email, telefono FROM project.vendedor
-                ) AS E WHERE E.rut = ? OR E.email = ? OR E.telefono = ?"""
+        final PreparedStatement query = this.prepareStatement("""
+                SELECT 1 FROM project.empleado
+                    WHERE rut = ? OR email = ? OR telefono = ?
+                    LIMIT 1"""
         );
         query.setString(1, rut);
         query.setString(2, email);
         query.setInt(3, phone);
 
-        logQuery(query.toString());
-        final ResultSet result = query.executeQuery();
+        final ResultSet result = this.executeQuery(query);
 
         return result.next();
     }
 
     public boolean isCashierFired(@Nonnull String rut) throws SQLException {
-        final PreparedStatement query = this.connection.prepareStatement(
+        final PreparedStatement query = this.prepareStatement(
                 "SELECT despedido FROM project.vendedor WHERE rut = ?"
         );
         query.setString(1, rut);
 
-        logQuery(query.toString());
-        final ResultSet result = query.executeQuery();
+        final ResultSet result = this.executeQuery(query);
 
         return result.next() && result.getBoolean("despedido");
     }
 
     public void markCashierAsFired(@Nonnull String rut) throws SQLException {
-        final PreparedStatement query = this.connection.prepareStatement(
+        final PreparedStatement query = this.prepareStatement(
                 "UPDATE project.vendedor SET despedido = TRUE WHERE rut = ?"
         );
         query.setString(1, rut);
 
-        logQuery(query.toString());
-        query.executeUpdate();
+        this.executeUpdate(query);
     }
 
     @Nullable
     public Client getClient(@Nonnull String rut) throws SQLException {
-        final PreparedStatement query = this.connection.prepareStatement(
+        final PreparedStatement query = this.prepareStatement(
                 "SELECT * FROM project.cliente WHERE rut = ?"
         );
         query.setString(1, rut);
 
-        logQuery(query.toString());
-        final ResultSet result = query.executeQuery();
+        final ResultSet result = this.executeQuery(query);
 
         return result.next() ? new Client(
                 result.getString("rut"),
@@ -803,33 +1287,31 @@ public class DatabaseConnection implements AutoCloseable {
     }
 
     public boolean doesClientExist(@Nonnull Client client) throws SQLException {
-        final PreparedStatement query = this.connection.prepareStatement(
+        final PreparedStatement query = this.prepareStatement(
                 "SELECT 1 FROM project.cliente WHERE rut = ? OR email = ? OR telefono = ?"
         );
         query.setString(1, client.rut());
         query.setString(2, client.email());
         query.setInt(3, client.phone());
 
-        logQuery(query.toString());
-        final ResultSet result = query.executeQuery();
+        final ResultSet result = this.executeQuery(query);
 
         return result.next();
     }
 
     public boolean doesClientExist(@Nonnull String rut) throws SQLException {
-        final PreparedStatement query = this.connection.prepareStatement(
+        final PreparedStatement query = this.prepareStatement(
                 "SELECT 1 FROM project.cliente WHERE rut = ?"
         );
         query.setString(1, rut);
 
-        logQuery(query.toString());
-        final ResultSet result = query.executeQuery();
+        final ResultSet result = this.executeQuery(query);
 
         return result.next();
     }
 
     public void insertClient(@Nonnull Client client) throws SQLException {
-        final PreparedStatement query = this.connection.prepareStatement(
+        final PreparedStatement query = this.prepareStatement(
                 "INSERT INTO project.cliente VALUES (?, ?, ?, ?, ?, ?, ?)"
         );
         query.setString(1, client.rut());
@@ -840,26 +1322,39 @@ public class DatabaseConnection implements AutoCloseable {
         query.setString(6, client.email());
         query.setInt(7, client.phone());
 
-        logQuery(query.toString());
-        query.executeUpdate();
+        this.executeUpdate(query);
     }
 
     @SuppressWarnings("BooleanMethodIsAlwaysInverted")
     public boolean doesCashierExist(@Nonnull String rut) throws SQLException {
-        final PreparedStatement query = this.connection.prepareStatement(
+        final PreparedStatement query = this.prepareStatement(
                 "SELECT 1 FROM project.vendedor WHERE rut = ?"
         );
         query.setString(1, rut);
 
-        logQuery(query.toString());
-        final ResultSet result = query.executeQuery();
+        final ResultSet result = this.executeQuery(query);
 
         return result.next();
     }
 
-    public ArrayList<Sale> getSalesInStore(@Nonnull String managerRut) throws SQLException {
-        final PreparedStatement query = this.connection.prepareStatement("""
-                -- noinspection SqlAggregates
+    @Nonnull
+    public Stream<Sale> getSales(
+            @Nullable String cashierRut,
+            @Nullable String managerRut,
+            @Nullable Timestamp from,
+            @Nullable Timestamp to,
+            @Nullable SaleCursor after,
+            int limit
+    ) throws SQLException {
+        final AtomicInteger argumentCounter = new AtomicInteger(1);
+        int cashierArgPosition = -1;
+        int managerArgPosition = -1;
+        int fromArgPosition = -1;
+        int toArgPosition = -1;
+        int afterArgPosition = -1;
+        int limitArgPosition = -1;
+
+        String sql = """
                 SELECT
                     S.id,
                     S.fecha AS date,
@@ -870,95 +1365,105 @@ public class DatabaseConnection implements AutoCloseable {
                     (SELECT json_agg(json_build_object(
                         'sku', VP.sku_producto, 'quantity', VP.cantidad
                     )) FROM project.ventadeproducto AS VP WHERE VP.id_venta = S.id) AS products
-                    FROM project.gerente AS G
-                    INNER JOIN project.vendedor AS V ON V.id_sucursal = G.id_sucursal
-                    INNER JOIN project.venta AS S ON S.rut_vendedor = V.rut
-                    INNER JOIN project.comprobante AS C ON C.id = S.id
-                    WHERE G.rut = ?
-                    GROUP BY S.id, C.id
-                    ORDER BY S.fecha;"""
-        );
-        query.setString(1, managerRut);
-
-        logQuery(query.toString());
-        final ResultSet result = query.executeQuery();
-
-        final ArrayList<Sale> sales = new ArrayList<>();
-
-        while (result.next()) {
-            final JSONArray jsonProducts = new JSONArray(result.getString("products"));
-            final ArrayList<ProductSale> products = new ArrayList<>();
-
-            for (final Object json : jsonProducts) {
-                products.add(new ProductSale((JSONObject) json));
-            }
+                    FROM project.venta AS S
+                    INNER JOIN project.comprobante AS C ON C.id = S.id""";
 
-            sales.add(new Sale(
-                    result.getLong("id"),
-                    result.getTimestamp("date"),
-                    result.getString("cashierRut"),
-                    result.getString("clientRut"),
-                    Objects.requireNonNull(Util.stringToEnum(result.getString("type"), Sale.Type.class)),
-                    result.getInt("total"),
-                    products
-            ));
+        if (managerRut != null) {
+            sql += "\n    INNER JOIN project.vendedor AS V ON V.rut = S.rut_vendedor";
+            sql += "\n    INNER JOIN project.gerente AS G ON G.id_sucursal = V.id_sucursal";
         }
 
-        return sales;
-    }
+        sql += "\n    WHERE TRUE";
 
-    public ArrayList<Sale> getSalesOfCashier(@Nonnull String cashierRut) throws SQLException {
-        final PreparedStatement query = this.connection.prepareStatement("""
-                -- noinspection SqlAggregates
-                SELECT
-                    S.id,
-                    S.fecha AS date,
-                    S.rut_vendedor AS cashierrut,
-                    S.rut_cliente AS clientrut,
-                    C.tipo AS type,
-                    C.total,
-                    (SELECT json_agg(json_build_object(
-                        'sku', VP.sku_producto, 'quantity', VP.cantidad
-                    )) FROM project.ventadeproducto AS VP WHERE VP.id_venta = S.id) AS products
-                    FROM project.vendedor AS V
-                    INNER JOIN project.venta AS S ON S.rut_vendedor = V.rut
-                    INNER JOIN project.comprobante AS C ON C.id = S.id
-                    WHERE V.rut = ?
-                    GROUP BY S.id, C.id
-                    ORDER BY S.fecha;"""
-        );
-        query.setString(1, cashierRut);
+        if (cashierRut != null) {
+            sql += "\n    AND S.rut_vendedor = ?";
+            cashierArgPosition = argumentCounter.getAndIncrement();
+        }
+        if (managerRut != null) {
+            sql += "\n    AND G.rut = ?";
+            managerArgPosition = argumentCounter.getAndIncrement();
+        }
+        if (from != null) {
+            sql += "\n    AND S.fecha >= ?";
+            fromArgPosition = argumentCounter.getAndIncrement();
+        }
+        if (to != null) {
+            sql += "\n    AND S.fecha < ?";
+            toArgPosition = argumentCounter.getAndIncrement();
+        }
+        if (after != null) {
+            sql += "\n    AND (S.fecha, S.id) > (?, ?)";
+            afterArgPosition = argumentCounter.getAndAdd(2);
+        }
 
-        logQuery(query.toString());
-        final ResultSet result = query.executeQuery();
+        sql += "\n    ORDER BY S.fecha, S.id";
 
-        final ArrayList<Sale> sales = new ArrayList<>();
+        if (limit > 0) {
+            sql += "\n    LIMIT ?";
+            limitArgPosition = argumentCounter.getAndIncrement();
+        }
 
-        while (result.next()) {
-            final JSONArray jsonProducts = new JSONArray(result.getString("products"));
-            final ArrayList<ProductSale> products = new ArrayList<>();
+        // The driver only uses a cursor for fetch size when the statement runs inside a transaction
+        this.beginTransaction();
 
-            for (final Object json : jsonProducts) {
-                products.add(new ProductSale((JSONObject) json));
-            }
+        final PreparedStatement query = this.prepareDynamicStatement(sql);
+        query.setFetchSize(SALES_FETCH_SIZE);
 
-            sales.add(new Sale(
-                    result.getLong("id"),
-                    result.getTimestamp("date"),
-                    result.getString("cashierRut"),
-                    result.getString("clientRut"),
-                    Objects.requireNonNull(Util.stringToEnum(result.getString("type"), Sale.Type.class)),
-                    result.getInt("total"),
-                    products
-            ));
+        if (cashierArgPosition != -1) query.setString(cashierArgPosition, cashierRut);
+        if (managerArgPosition != -1) query.setString(managerArgPosition, managerRut);
+        if (fromArgPosition != -1) query.setTimestamp(fromArgPosition, from);
+        if (toArgPosition != -1) query.setTimestamp(toArgPosition, to);
+        if (afterArgPosition != -1) {
+            query.setTimestamp(afterArgPosition, after.date());
+            query.setLong(afterArgPosition + 1, after.id());
         }
+        if (limitArgPosition != -1) query.setInt(limitArgPosition, limit);
+
+        final ResultSet result = this.executeQuery(query);
+
+        final Spliterator<Sale> sales = new Spliterators.AbstractSpliterator<>(
+                Long.MAX_VALUE,
+                Spliterator.ORDERED | Spliterator.NONNULL
+        ) {
+            @Override
+            public boolean tryAdvance(Consumer<? super Sale> action) {
+                try {
+                    if (!result.next()) return false;
+
+                    final JSONArray jsonProducts = new JSONArray(result.getString("products"));
+                    final ArrayList<ProductSale> products = new ArrayList<>();
+
+                    for (final Object json : jsonProducts) {
+                        products.add(new ProductSale((JSONObject) json));
+                    }
+
+                    action.accept(new Sale(
+                            result.getLong("id"),
+                            result.getTimestamp("date"),
+                            result.getString("cashierRut"),
+                            result.getString("clientRut"),
+                            Objects.requireNonNull(Util.stringToEnum(result.getString("type"), Sale.Type.class)),
+                            result.getInt("total"),
+                            products
+                    ));
+                    return true;
+                } catch (SQLException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        };
 
-        return sales;
+        return StreamSupport.stream(sales, false).onClose(() -> {
+            try {
+                result.close();
+            } catch (SQLException ignored) {
+            }
+        });
     }
 
     @Nullable
     public Sale getSale(long id) throws SQLException {
-        final PreparedStatement query = this.connection.prepareStatement("""
+        final PreparedStatement query = this.prepareStatement("""
                 SELECT
                     V.fecha AS date,
                     V.rut_vendedor AS cashierrut,
@@ -975,8 +1480,7 @@ public class DatabaseConnection implements AutoCloseable {
         );
         query.setLong(1, id);
 
-        logQuery(query.toString());
-        final ResultSet result = query.executeQuery();
+        final ResultSet result = this.executeQuery(query);
 
         if (!result.next()) return null;
 
@@ -998,8 +1502,102 @@ public class DatabaseConnection implements AutoCloseable {
         );
     }
 
+    public HashSet<String> getExistingClients(@Nonnull List<String> ruts) throws SQLException {
+        final PreparedStatement query = this.prepareStatement(
+                "SELECT rut FROM project.cliente WHERE rut = ANY (?)"
+        );
+        query.setArray(1, this.connection.createArrayOf("TEXT", ruts.toArray()));
+
+        final ResultSet result = this.executeQuery(query);
+
+        final HashSet<String> clients = new HashSet<>();
+
+        while (result.next()) {
+            clients.add(result.getString("rut"));
+        }
+
+        return clients;
+    }
+
+    public HashMap<String, Long> getIngestedSales(
+            @Nonnull String cashierRut,
+            @Nonnull List<String> keys
+    ) throws SQLException {
+        final PreparedStatement query = this.prepareStatement(
+                "SELECT clave, id_venta FROM project.venta_ingesta WHERE rut_vendedor = ? AND clave = ANY (?)"
+        );
+        query.setString(1, cashierRut);
+        query.setArray(2, this.connection.createArrayOf("TEXT", keys.toArray()));
+
+        final ResultSet result = this.executeQuery(query);
+
+        final HashMap<String, Long> sales = new HashMap<>();
+
+        while (result.next()) {
+            sales.put(result.getString("clave"), result.getLong("id_venta"));
+        }
+
+        return sales;
+    }
+
+    // Creates every sale whose key was not ingested yet and records its key, all in one statement. A key
+    // ingested concurrently by another request makes the whole statement fail on the primary key instead of
+    // creating the sale twice. Returns the new sale id of each key.
+    public HashMap<String, Long> ingestSales(
+            @Nonnull String cashierRut,
+            @Nonnull List<String> keys,
+            @Nonnull List<Sale> sales
+    ) throws SQLException {
+        final PreparedStatement query = this.prepareStatement("""
+                WITH B AS (
+                    SELECT L.*
+                        FROM UNNEST(?::TEXT[], ?::TEXT[], ?::TEXT[], ?::TEXT[]) AS L(clave, cliente, tipo, productos)
+                        WHERE NOT EXISTS (
+                            SELECT 1 FROM project.venta_ingesta AS VI WHERE VI.rut_vendedor = ? AND VI.clave = L.clave
+                        )
+                ), S AS (
+                    SELECT B.clave, project.crear_venta(
+                        ?,
+                        B.cliente,
+                        B.tipo::project.tipo_comprobante,
+                        B.productos::project.producto_y_cantidad[]
+                    ) AS id
+                        FROM B
+                )
+                INSERT INTO project.venta_ingesta (rut_vendedor, clave, id_venta)
+                    SELECT ?, S.clave, S.id FROM S
+                    RETURNING clave, id_venta"""
+        );
+        query.setArray(1, this.connection.createArrayOf("TEXT", keys.toArray()));
+        query.setArray(2, this.connection.createArrayOf("TEXT", sales.stream().map(Sale::clientRut).toArray()));
+        query.setArray(3, this.connection.createArrayOf(
+                "TEXT", sales.stream().map(sale -> sale.type().toString()).toArray()
+        ));
+        // Each sale's products travel as a composite array literal, the same row format insertSale sends
+        query.setArray(4, this.connection.createArrayOf("TEXT", sales.stream().map(sale ->
+                sale.products().stream()
+                        .map(product -> "\"(" + product.sku() + "," + product.quantity() + ")\"")
+                        .collect(Collectors.joining(",", "{", "}"))
+        ).toArray()));
+        query.setString(5, cashierRut);
+        query.setString(6, cashierRut);
+        query.setString(7, cashierRut);
+
+        final ResultSet result = this.executeQuery(query);
+
+        final HashMap<String, Long> ingested = new HashMap<>();
+
+        while (result.next()) {
+            ingested.put(result.getString("clave"), result.getLong("id_venta"));
+        }
+
+        this.updateSalesRollups(ingested.values());
+
+        return ingested;
+    }
+
     public long insertSale(@Nonnull Sale sale) throws SQLException {
-        final PreparedStatement query = this.connection.prepareStatement(
+        final PreparedStatement query = this.prepareStatement(
                 "SELECT project.crear_venta(?, ?, ?::project.tipo_comprobante, ?);"
         );
         query.setString(1, sale.cashierRut());
@@ -1011,24 +1609,190 @@ public class DatabaseConnection implements AutoCloseable {
                 ).toArray())
         );
 
-        logQuery(query.toString());
-        final ResultSet result = query.executeQuery();
+        final ResultSet result = this.executeQuery(query);
         result.next();
+        final long saleId = result.getLong(1);
 
-        return result.getLong(1);
+        this.updateSalesRollups(List.of(saleId));
+
+        return saleId;
+    }
+
+    // Must run in the transaction that created the sales, so the rollups never count a sale that was rolled back
+    private void updateSalesRollups(@Nonnull Collection<Long> saleIds) throws SQLException {
+        if (saleIds.isEmpty()) return;
+
+        final PreparedStatement query = this.prepareStatement("""
+                INSERT INTO project.venta_mensual (rut_vendedor, mes, total, ventas)
+                    SELECT S.rut_vendedor, CAST(DATE_TRUNC('month', S.fecha) AS DATE), SUM(C.total), COUNT(*)
+                        FROM project.venta AS S
+                        INNER JOIN project.comprobante AS C ON C.id = S.id
+                        WHERE S.id = ANY (?)
+                        GROUP BY S.rut_vendedor, CAST(DATE_TRUNC('month', S.fecha) AS DATE)
+                    ON CONFLICT (rut_vendedor, mes) DO UPDATE SET
+                        total = venta_mensual.total + EXCLUDED.total,
+                        ventas = venta_mensual.ventas + EXCLUDED.ventas"""
+        );
+        query.setArray(1, this.connection.createArrayOf("BIGINT", saleIds.toArray()));
+
+        this.executeUpdate(query);
+
+        final PreparedStatement dailyQuery = this.prepareStatement("""
+                INSERT INTO project.venta_diaria (id_sucursal, dia, rut_vendedor, ventas, unidades, total)
+                    SELECT V.id_sucursal, CAST(S.fecha AS DATE), S.rut_vendedor, COUNT(*), SUM(U.unidades), SUM(C.total)
+                        FROM project.venta AS S
+                        INNER JOIN project.vendedor AS V ON V.rut = S.rut_vendedor
+                        INNER JOIN project.comprobante AS C ON C.id = S.id
+                        INNER JOIN (
+                            SELECT id_venta, SUM(cantidad) AS unidades
+                                FROM project.ventadeproducto
+                                WHERE id_venta = ANY (?)
+                                GROUP BY id_venta
+                        ) AS U ON U.id_venta = S.id
+                        GROUP BY V.id_sucursal, CAST(S.fecha AS DATE), S.rut_vendedor
+                    ON CONFLICT (id_sucursal, dia, rut_vendedor) DO UPDATE SET
+                        ventas = venta_diaria.ventas + EXCLUDED.ventas,
+                        unidades = venta_diaria.unidades + EXCLUDED.unidades,
+                        total = venta_diaria.total + EXCLUDED.total"""
+        );
+        dailyQuery.setArray(1, this.connection.createArrayOf("BIGINT", saleIds.toArray()));
+
+        this.executeUpdate(dailyQuery);
+
+        // Lines carry no price of their own, so each sale's recorded total is split over its lines by list price.
+        // Every line gets the difference between two cumulative shares, so the lines of a sale add up to its total
+        // and product revenue adds up to store revenue. Weights are at least one peso per unit, so a sale of only
+        // free products still splits its total. Same split as migration 007.
+        final PreparedStatement productsQuery = this.prepareStatement("""
+                INSERT INTO project.venta_diaria_producto (id_sucursal, dia, sku_producto, ventas, unidades, total)
+                    SELECT L.id_sucursal, L.dia, L.sku_producto, COUNT(DISTINCT L.id_venta), SUM(L.cantidad), SUM(
+                        FLOOR(L.total * L.peso_acumulado / L.peso_venta)
+                        - FLOOR(L.total * (L.peso_acumulado - L.peso) / L.peso_venta)
+                    )
+                        FROM (
+                            SELECT
+                                V.id_sucursal,
+                                CAST(S.fecha AS DATE) AS dia,
+                                VP.id_venta,
+                                VP.sku_producto,
+                                VP.cantidad,
+                                C.total,
+                                W.peso,
+                                SUM(W.peso) OVER (
+                                    PARTITION BY VP.id_venta ORDER BY VP.sku_producto ROWS UNBOUNDED PRECEDING
+                                ) AS peso_acumulado,
+                                SUM(W.peso) OVER (PARTITION BY VP.id_venta) AS peso_venta
+                                FROM project.venta AS S
+                                INNER JOIN project.vendedor AS V ON V.rut = S.rut_vendedor
+                                INNER JOIN project.comprobante AS C ON C.id = S.id
+                                INNER JOIN project.ventadeproducto AS VP ON VP.id_venta = S.id
+                                INNER JOIN project.producto AS P ON P.sku = VP.sku_producto
+                                CROSS JOIN LATERAL (
+                                    SELECT VP.cantidad * CAST(GREATEST(P.precio_sin_iva, 1) AS NUMERIC) AS peso
+                                ) AS W
+                                WHERE S.id = ANY (?)
+                        ) AS L
+                        GROUP BY L.id_sucursal, L.dia, L.sku_producto
+                    ON CONFLICT (id_sucursal, dia, sku_producto) DO UPDATE SET
+                        ventas = venta_diaria_producto.ventas + EXCLUDED.ventas,
+                        unidades = venta_diaria_producto.unidades + EXCLUDED.unidades,
+                        total = venta_diaria_producto.total + EXCLUDED.total"""
+        );
+        productsQuery.setArray(1, this.connection.createArrayOf("BIGINT", saleIds.toArray()));
+
+        this.executeUpdate(productsQuery);
+    }
+
+    @Nonnull
+    public JSONArray getSalesAnalytics(@Nonnull SalesAnalyticsQuery analytics) throws SQLException {
+        final String period = "DATE_TRUNC('" + analytics.period() + "', R.dia)";
+        final String table = analytics.groupBy() == SalesAnalyticsQuery.GroupBy.PRODUCT
+                ? "project.venta_diaria_producto"
+                : "project.venta_diaria";
+
+        String sql = "SELECT CAST(" + period + " AS DATE) AS period";
+        switch (analytics.groupBy()) {
+            case CASHIER -> sql += ", R.rut_vendedor AS cashierRut";
+            case PRODUCT -> sql += ", R.sku_producto AS sku";
+        }
+        sql += ", SUM(R.total) AS revenue, SUM(R.unidades) AS units, SUM(R.ventas) AS tickets";
+        sql += "\n    FROM " + table + " AS R";
+        sql += "\n    WHERE R.id_sucursal = ? AND R.dia >= ? AND R.dia < ?";
+        sql += "\n    GROUP BY 1" + (analytics.groupBy() == SalesAnalyticsQuery.GroupBy.STORE ? "" : ", 2");
+        sql += "\n    ORDER BY 1" + (analytics.groupBy() == SalesAnalyticsQuery.GroupBy.STORE ? "" : ", 2");
+
+        // Only period and grouping vary, so there are few enough shapes to keep each one in the statement cache
+        final PreparedStatement query = this.prepareStatement(sql);
+        query.setInt(1, analytics.storeId());
+        query.setDate(2, analytics.from());
+        query.setDate(3, analytics.to());
+
+        final ResultSet result = this.executeQuery(query);
+
+        final JSONArray rows = new JSONArray();
+
+        while (result.next()) {
+            final JSONObject row = new JSONObject().put("period", result.getDate("period").toString());
+            switch (analytics.groupBy()) {
+                case CASHIER -> row.put("cashierRut", result.getString("cashierRut"));
+                case PRODUCT -> row.put("sku", result.getLong("sku"));
+            }
+            rows.put(row
+                    .put("revenue", result.getLong("revenue"))
+                    .put("units", result.getLong("units"))
+                    .put("tickets", result.getLong("tickets"))
+            );
+        }
+
+        return rows;
     }
 
-    public float getSalesTax() throws SQLException {
-        final ResultSet result = this.connection.createStatement().executeQuery(
-                " SELECT iva FROM project.parametros"
+    @Nonnull
+    public Parameters getParameters() throws SQLException {
+        final ResultSet result = this.executeQuery(this.prepareStatement("""
+                SELECT
+                    iva AS tax,
+                    porcentaje_comision AS commission,
+                    sueldo_base_full_time AS fullTimeBaseSalary,
+                    sueldo_base_part_time AS partTimeBaseSalary
+                    FROM project.parametros"""
+        ));
+
+        if (!result.next()) {
+            throw new SQLException("project.parametros is empty.");
+        }
+
+        return new Parameters(
+                result.getBigDecimal("tax"),
+                result.getBigDecimal("commission"),
+                result.getInt("fullTimeBaseSalary"),
+                result.getInt("partTimeBaseSalary"),
+                true
         );
+    }
+
+    // Checks the Java tax arithmetic against the database function over every catalog price, plus every small price
+    // and a spread of large ones, which a price filter may land on before any product has that price
+    public boolean matchesDatabaseTax(@Nonnull Parameters parameters) throws SQLException {
+        final ResultSet result = this.executeQuery(this.prepareStatement("""
+                SELECT V.price, project.aplicar_iva(V.price)
+                    FROM (
+                        SELECT precio_sin_iva AS price FROM project.producto
+                        UNION SELECT generate_series(0, 10000)
+                        UNION SELECT generate_series(10001, 100000000, 99991)
+                    ) AS V"""
+        ));
+
+        while (result.next()) {
+            if (parameters.applyTax(result.getInt(1)) != result.getInt(2)) return false;
+        }
 
-        return result.getFloat(1);
+        return true;
     }
 
     @Nullable
     public JSONObject getManager(@Nonnull String rut) throws SQLException {
-        final PreparedStatement query = this.connection.prepareStatement("""
+        final PreparedStatement query = this.prepareStatement("""
                 SELECT
                     rut,
                     nombre_primero AS firstName,
@@ -1042,8 +1806,7 @@ public class DatabaseConnection implements AutoCloseable {
         );
         query.setString(1, rut);
 
-        logQuery(query.toString());
-        final ResultSet result = query.executeQuery();
+        final ResultSet result = this.executeQuery(query);
 
         return result.next()
                 ? new JSONObject()
@@ -1059,19 +1822,18 @@ public class DatabaseConnection implements AutoCloseable {
 
     @Nullable
     public Integer getManagerStoreId(@Nonnull String managerRut) throws SQLException {
-        final PreparedStatement query = this.connection.prepareStatement(
+        final PreparedStatement query = this.prepareStatement(
                 "SELECT id_sucursal FROM project.gerente WHERE rut = ?"
         );
         query.setString(1, managerRut);
 
-        logQuery(query.toString());
-        final ResultSet result = query.executeQuery();
+        final ResultSet result = this.executeQuery(query);
 
         return result.next() ? result.getInt(1) : null;
     }
 
     public ArrayList<Cashier> getCashiers(@Nonnull String managerRut) throws SQLException {
-        final PreparedStatement query = this.connection.prepareStatement("""
+        final PreparedStatement query = this.prepareStatement("""
                 SELECT
                     V.rut,
                     V.nombre_primero AS firstName,
@@ -1087,8 +1849,7 @@ public class DatabaseConnection implements AutoCloseable {
         );
         query.setString(1, managerRut);
 
-        logQuery(query.toString());
-        final ResultSet result = query.executeQuery();
+        final ResultSet result = this.executeQuery(query);
 
         final ArrayList<Cashier> cashiers = new ArrayList<>();
 
@@ -1113,7 +1874,7 @@ public class DatabaseConnection implements AutoCloseable {
 
     @Nullable
     public Cashier getCashier(@Nonnull String cashierRut) throws SQLException {
-        final PreparedStatement query = this.connection.prepareStatement("""
+        final PreparedStatement query = this.prepareStatement("""
                 SELECT
                     rut,
                     nombre_primero AS firstName,
@@ -1128,8 +1889,7 @@ public class DatabaseConnection implements AutoCloseable {
         );
         query.setString(1, cashierRut);
 
-        logQuery(query.toString());
-        final ResultSet result = query.executeQuery();
+        final ResultSet result = this.executeQuery(query);
 
         return result.next() ? new Cashier(
                 result.getString("rut"),
@@ -1147,23 +1907,35 @@ public class DatabaseConnection implements AutoCloseable {
     }
 
     public JSONArray getCashierSalaryHistory(@Nonnull String cashierRut) throws SQLException {
-        final PreparedStatement query = this.connection.prepareStatement("""
+        final Parameters parameters = ReferenceDataCache.PARAMETERS.get(this).value();
+        // Closed months come from the rollup, only the month still in progress is aggregated from the sales
+        final PreparedStatement query = this.prepareStatement("""
+                WITH M AS (
+                    SELECT VM.mes, VM.total
+                        FROM project.venta_mensual AS VM
+                        WHERE VM.rut_vendedor = ? AND VM.mes < DATE_TRUNC('month', NOW())
+                    UNION ALL
+                    SELECT CAST(DATE_TRUNC('month', NOW()) AS DATE), SUM(C.total)
+                        FROM project.Venta AS S
+                        INNER JOIN project.Comprobante AS C ON C.id = S.id
+                        WHERE S.rut_vendedor = ? AND S.fecha >= DATE_TRUNC('month', NOW())
+                        HAVING COUNT(*) > 0
+                )
                 SELECT
-                    CAST(DATE_PART('year', S.fecha) AS INT) AS year,
-                    CAST(DATE_PART('month', S.fecha) AS INT) AS month,
-                    CAST(TRUNC(SUM(C.total) * (SELECT porcentaje_comision FROM project.Parametros)) AS INT)
-                        + (SELECT (CASE WHEN V.full_time THEN sueldo_base_full_time ELSE sueldo_base_part_time END
-                    ) FROM project.Parametros) AS salary
+                    CAST(DATE_PART('year', M.mes) AS INT) AS year,
+                    CAST(DATE_PART('month', M.mes) AS INT) AS month,
+                    M.total AS totalSales,
+                    V.full_time AS fullTime
                     FROM project.vendedor AS V
-                    INNER JOIN project.Venta AS S ON S.rut_vendedor = V.rut
-                    INNER JOIN project.Comprobante AS C ON C.id = S.id
+                    INNER JOIN M ON TRUE
                     WHERE V.rut = ?
-                    GROUP BY V.rut, year, month;"""
+                    ORDER BY M.mes;"""
         );
         query.setString(1, cashierRut);
+        query.setString(2, cashierRut);
+        query.setString(3, cashierRut);
 
-        logQuery(query.toString());
-        final ResultSet result = query.executeQuery();
+        final ResultSet result = this.executeQuery(query);
 
         final JSONArray salaryHistory = new JSONArray();
 
@@ -1171,7 +1943,7 @@ public class DatabaseConnection implements AutoCloseable {
             salaryHistory.put(new JSONObject()
                     .put("year", result.getInt("year"))
                     .put("month", result.getInt("month"))
-                    .put("salary", result.getInt("salary"))
+                    .put("salary", parameters.salary(result.getLong("totalSales"), result.getBoolean("fullTime")))
             );
         }
 
@@ -1179,7 +1951,7 @@ public class DatabaseConnection implements AutoCloseable {
     }
 
     public void insertCashier(@Nonnull Cashier cashier) throws SQLException {
-        final PreparedStatement query = this.connection.prepareStatement("""
+        final PreparedStatement query = this.prepareStatement("""
                 INSERT INTO project.vendedor (
                               rut, nombre_primero, nombre_segundo, nombre_ap_paterno, nombre_ap_materno,
                               email, telefono, full_time, contraseña, salt, id_sucursal)
@@ -1197,19 +1969,17 @@ public class DatabaseConnection implements AutoCloseable {
         query.setString(10, cashier.salt());
         query.setInt(11, cashier.storeId());
 
-        logQuery(query.toString());
-        query.executeUpdate();
+        this.executeUpdate(query);
     }
 
     public void updateCashierContract(@Nonnull String rut, boolean fullTime) throws SQLException {
-        final PreparedStatement query = this.connection.prepareStatement(
+        final PreparedStatement query = this.prepareStatement(
                 "UPDATE project.vendedor SET full_time = ? WHERE rut = ?"
         );
         query.setBoolean(1, fullTime);
         query.setString(2, rut);
 
-        logQuery(query.toString());
-        query.executeUpdate();
+        this.executeUpdate(query);
     }
 
     public ArrayList<Supplier> getSuppliers(
@@ -1217,10 +1987,58 @@ public class DatabaseConnection implements AutoCloseable {
             @Nonnull ArrayList<Integer> brands,
             @Nonnull ArrayList<Integer> communes
     ) throws SQLException {
+        int shapeKey = 0;
+        if (!brands.isEmpty()) shapeKey |= SHAPE_BRANDS;
+        if (!products.isEmpty()) shapeKey |= SHAPE_PRODUCTS;
+        if (!communes.isEmpty()) shapeKey |= SHAPE_COMMUNES;
+
+        final SuppliersQueryShape shape = SUPPLIERS_QUERY_SHAPES.computeIfAbsent(
+                shapeKey,
+                DatabaseConnection::buildSuppliersQueryShape
+        );
+
+        final PreparedStatement query = this.prepareStatement(shape.sql);
+
+        if (shape.brandsArgPosition != -1) {
+            query.setArray(shape.brandsArgPosition, this.connection.createArrayOf("INT", brands.toArray()));
+        }
+        if (shape.productsArgPosition != -1) {
+            query.setArray(shape.productsArgPosition, this.connection.createArrayOf("INT", products.toArray()));
+        }
+        if (shape.communesArgPosition != -1) {
+            query.setArray(shape.communesArgPosition, this.connection.createArrayOf("INT", communes.toArray()));
+        }
+
+        final ResultSet result = this.executeQuery(query);
+
+        final ArrayList<Supplier> suppliers = new ArrayList<>();
+
+        while (result.next()) {
+            suppliers.add(new Supplier(
+                    result.getString("rut"),
+                    result.getString("firstName"),
+                    result.getString("secondName"),
+                    result.getString("firstLastName"),
+                    result.getString("secondLastName"),
+                    result.getString("email"),
+                    result.getInt("phone"),
+                    result.getString("addressStreet"),
+                    result.getShort("addressNumber"),
+                    (short) -1,
+                    result.getString("communeName"),
+                    new ArrayList<>(),
+                    Util.jsonArrayToList(new JSONArray(result.getString("brands")), String.class)
+            ));
+        }
+
+        return suppliers;
+    }
+
+    private static SuppliersQueryShape buildSuppliersQueryShape(int shapeKey) {
         final AtomicInteger argumentCounter = new AtomicInteger(1);
-        int productsPosition = -1;
-        int brandsPosition = -1;
-        int communesPosition = -1;
+        int productsArgPosition = -1;
+        int brandsArgPosition = -1;
+        int communesArgPosition = -1;
 
         String sql = """
                 -- noinspection SqlShouldBeInGroupBy
@@ -1244,71 +2062,36 @@ public class DatabaseConnection implements AutoCloseable {
                     INNER JOIN project.comuna AS C ON C.id = S.id_comuna
                     INNER JOIN project.proveedordemarca AS PM ON PM.rut_proveedor = S.rut""";
 
-        if (!brands.isEmpty() || !products.isEmpty()) {
+        if ((shapeKey & (SHAPE_BRANDS | SHAPE_PRODUCTS)) != 0) {
             sql += "\n    INNER JOIN project.marca AS M ON M.id = PM.id_marca";
         }
-        if (!products.isEmpty()) {
+        if ((shapeKey & SHAPE_PRODUCTS) != 0) {
             sql += "\n    INNER JOIN project.producto AS P ON P.id_marca = M.id";
         }
 
         sql += "\n    WHERE 1 = 1";
 
-        if (!brands.isEmpty()) {
+        if ((shapeKey & SHAPE_BRANDS) != 0) {
             sql += "\n    AND M.id = ANY (?)";
-            brandsPosition = argumentCounter.getAndIncrement();
+            brandsArgPosition = argumentCounter.getAndIncrement();
         }
-        if (!products.isEmpty()) {
+        if ((shapeKey & SHAPE_PRODUCTS) != 0) {
             sql += "\n    AND P.sku = ANY (?)";
-            productsPosition = argumentCounter.getAndIncrement();
+            productsArgPosition = argumentCounter.getAndIncrement();
         }
-        if (!communes.isEmpty()) {
+        if ((shapeKey & SHAPE_COMMUNES) != 0) {
             sql += "\n    AND C.id = ANY (?)";
-            communesPosition = argumentCounter.getAndIncrement();
-        }
-
-        final PreparedStatement query = this.connection.prepareStatement(
-                sql + "\n    GROUP BY S.rut, C.id ORDER BY S.rut"
-        );
-
-        if (brandsPosition != -1) {
-            query.setArray(brandsPosition, this.connection.createArrayOf("INT", brands.toArray()));
-        }
-        if (productsPosition != -1) {
-            query.setArray(productsPosition, this.connection.createArrayOf("INT", products.toArray()));
-        }
-        if (communesPosition != -1) {
-            query.setArray(communesPosition, this.connection.createArrayOf("INT", communes.toArray()));
+            communesArgPosition = argumentCounter.getAndIncrement();
         }
 
-        logQuery(query.toString());
-        final ResultSet result = query.executeQuery();
-
-        final ArrayList<Supplier> suppliers = new ArrayList<>();
+        sql += "\n    GROUP BY S.rut, C.id ORDER BY S.rut";
 
-        while (result.next()) {
-            suppliers.add(new Supplier(
-                    result.getString("rut"),
-                    result.getString("firstName"),
-                    result.getString("secondName"),
-                    result.getString("firstLastName"),
-                    result.getString("secondLastName"),
-                    result.getString("email"),
-                    result.getInt("phone"),
-                    result.getString("addressStreet"),
-                    result.getShort("addressNumber"),
-                    (short) -1,
-                    result.getString("communeName"),
-                    new ArrayList<>(),
-                    Util.jsonArrayToList(new JSONArray(result.getString("brands")), String.class)
-            ));
-        }
-
-        return suppliers;
+        return new SuppliersQueryShape(sql, productsArgPosition, brandsArgPosition, communesArgPosition);
     }
 
     @Nullable
     public Supplier getSupplier(@Nonnull String rut, @Nonnull String email, int phone) throws SQLException {
-        final PreparedStatement query = this.connection.prepareStatement("""
+        final PreparedStatement query = this.prepareStatement("""
                 SELECT
                     P.rut,
                     P.nombre_primero AS firstName,
@@ -1332,8 +2115,7 @@ public class DatabaseConnection implements AutoCloseable {
         query.setString(2, email);
         query.setInt(3, phone);
 
-        logQuery(query.toString());
-        final ResultSet result = query.executeQuery();
+        final ResultSet result = this.executeQuery(query);
 
         return result.next() ? new Supplier(
                 result.getString("rut"),
@@ -1353,15 +2135,14 @@ public class DatabaseConnection implements AutoCloseable {
     }
 
     public boolean doesSupplierExist(@Nonnull Supplier supplier) throws SQLException {
-        final PreparedStatement query = this.connection.prepareStatement(
+        final PreparedStatement query = this.prepareStatement(
                 "SELECT 1 FROM project.proveedor WHERE rut = ? OR email = ? OR telefono = ?"
         );
         query.setString(1, supplier.rut());
         query.setString(2, supplier.email());
         query.setInt(3, supplier.phone());
 
-        logQuery(query.toString());
-        final ResultSet result = query.executeQuery();
+        final ResultSet result = this.executeQuery(query);
 
         return result.next();
     }
@@ -1371,7 +2152,7 @@ public class DatabaseConnection implements AutoCloseable {
         final String brands = "(?, ?),\n".repeat(brandsAmount)
                 .replaceFirst(",\n$", "");
 
-        final PreparedStatement query = this.connection.prepareStatement(
+        final PreparedStatement query = this.prepareDynamicStatement(
                 """
                         INSERT INTO project.proveedor VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?);
 
@@ -1394,12 +2175,59 @@ public class DatabaseConnection implements AutoCloseable {
             query.setInt(i * 2 + 12, brandId);
         }
 
-        logQuery(query.toString());
-        query.executeUpdate();
+        this.executeUpdate(query);
     }
 
     @Override
-    public void close() throws SQLException {
-        this.connection.close();
+    public void close() {
+        // Statements would otherwise outlive the lease on the pooled physical connection
+        for (final Statement statement : this.openStatements) {
+            try {
+                statement.close();
+            } catch (SQLException ignored) {
+            }
+        }
+        this.openStatements.clear();
+        this.queryShapes.clear();
+
+        ConnectionPool.release(this.pooledConnection);
+    }
+
+    private enum ProductSortKey {
+        // Taxing is monotonic, so the untaxed column gives the same order without calling the function per row
+        PRICE("P.precio_sin_iva"),
+        NAME("P.nombre"),
+        SKU("P.sku");
+
+        private final String expression;
+
+        ProductSortKey(String expression) {
+            this.expression = expression;
+        }
+    }
+
+    private record ProductsQueryShape(
+            String sql,
+            int nameArgPosition,
+            int minPriceArgPosition,
+            int maxPriceArgPosition,
+            int typesArgPosition,
+            int sizesArgPosition,
+            int brandsArgPosition,
+            int colorsArgPosition,
+            int communesArgPosition,
+            int regionsArgPosition,
+            int afterArgPosition,
+            int limitArgPosition,
+            List<ProductSortKey> sortKeys
+    ) {
+    }
+
+    private record SuppliersQueryShape(
+            String sql,
+            int productsArgPosition,
+            int brandsArgPosition,
+            int communesArgPosition
+    ) {
     }
 }
@@ -0,0 +1,57 @@
+package org.dbuniproject.api.db;
+
+import org.dbuniproject.api.Api;
+import org.dbuniproject.api.Util;
+import org.dbuniproject.api.logging.Logger;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+// Holds its own connection outside the pool, since a LISTEN session has to stay open for as long as the API runs
+public class ParametersListener {
+    private static final String CHANNEL = "project_parametros";
+    private static final int POLL_TIMEOUT_MS = Util.getIntSetting("PARAMETERS_LISTEN_POLL_MS", 10_000);
+    private static final long RECONNECT_DELAY_MS = Util.getLongSetting("PARAMETERS_LISTEN_RECONNECT_MS", 5_000);
+
+    public static void start() {
+        if (!Boolean.parseBoolean(Api.DOTENV.get("PARAMETERS_LISTEN", "false"))) return;
+
+        final Thread thread = new Thread(ParametersListener::run, "parameters-listener");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private static void run() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try (final Connection connection = DriverManager.getConnection(Api.DOTENV.get("POSTGRES_DB_URL"))) {
+                try (final Statement statement = connection.createStatement()) {
+                    statement.execute("LISTEN " + CHANNEL);
+                }
+
+                // Anything changed while there was no session listening would otherwise be missed
+                ReferenceDataCache.PARAMETERS.invalidate();
+
+                final PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                while (!Thread.currentThread().isInterrupted()) {
+                    final PGNotification[] notifications = pgConnection.getNotifications(POLL_TIMEOUT_MS);
+                    if (notifications != null && notifications.length > 0) {
+                        ReferenceDataCache.PARAMETERS.invalidate();
+                        Logger.log(Logger.Level.DEBUG, "[cache] project.parametros changed, invalidated parameters.");
+                    }
+                }
+            } catch (SQLException e) {
+                Logger.warn("[cache] Lost the parameters LISTEN connection: " + e.getMessage());
+            }
+
+            try {
+                Thread.sleep(RECONNECT_DELAY_MS);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+}
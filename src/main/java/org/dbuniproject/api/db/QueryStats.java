@@ -0,0 +1,233 @@
+package org.dbuniproject.api.db;
+
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+import org.dbuniproject.api.Api;
+import org.dbuniproject.api.Util;
+import org.dbuniproject.api.logging.Logger;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToDoubleFunction;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Aggregates executions per SQL shape. The SQL is already parameterized, so a shape is its text with whitespace
+// collapsed and the number of shapes is bounded by the queries the code can build.
+public class QueryStats {
+    private static final boolean ENABLED = Boolean.parseBoolean(Api.DOTENV.get("QUERY_STATS", "true"));
+    private static final int MAX_SHAPES = Util.getIntSetting("QUERY_STATS_MAX_SHAPES", 1_000);
+    private static final long SLOW_THRESHOLD_NANOS =
+            TimeUnit.MILLISECONDS.toNanos(Util.getLongSetting("QUERY_SLOW_THRESHOLD_MS", 200));
+    private static final int SLOW_LOG_SIZE = Util.getIntSetting("QUERY_SLOW_LOG_SIZE", 100);
+    // EXPLAIN ANALYZE runs the query a second time, so it is opt-in and at most once per shape per interval
+    private static final boolean EXPLAIN = Boolean.parseBoolean(Api.DOTENV.get("QUERY_EXPLAIN", "false"));
+    private static final long EXPLAIN_INTERVAL_MS = Util.getLongSetting("QUERY_EXPLAIN_INTERVAL_MS", 600_000);
+    private static final String EXPLAIN_STATEMENT_TIMEOUT = "30s";
+    // Anything that writes, takes row locks or calls one of the project's functions, project.aplicar_iva aside, is
+    // not a plain read. Running those again under ANALYZE would repeat their side effects or wait on the locks the
+    // original transaction still holds, so they only get a plan without executing them.
+    private static final Pattern NOT_READ_ONLY = Pattern.compile(
+            "\\b(INSERT|UPDATE|DELETE|MERGE|TRUNCATE|SHARE)\\b|\\bproject\\.(?!aplicar_iva\\b)\\w+\\s*\\(",
+            Pattern.CASE_INSENSITIVE
+    );
+    // Constants in plan conditions are the bound values of the explained execution
+    private static final Pattern PLAN_CONDITION = Pattern.compile("^(.*(?:Cond|Filter): )(\\(.*)$", Pattern.MULTILINE);
+    private static final Pattern PLAN_CONSTANT =
+            Pattern.compile("'(?:[^']|'')*'|(?<![\\w$.])-?\\d+(?:\\.\\d+)?(?![\\w.])");
+
+    private static final Method RESULT_NEXT;
+
+    static {
+        try {
+            RESULT_NEXT = ResultSet.class.getMethod("next");
+        } catch (NoSuchMethodException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private static final ConcurrentHashMap<String, Shape> SHAPES = new ConcurrentHashMap<>();
+    // Statement text as prepared, so normalizing only happens the first time a piece of SQL is seen
+    private static final ConcurrentHashMap<String, Shape> SHAPES_BY_SQL = new ConcurrentHashMap<>();
+    private static final ArrayDeque<JSONObject> SLOW_LOG = new ArrayDeque<>();
+    // Slow queries are usually slow in bursts, so pending plans beyond a handful are dropped rather than queued
+    private static final ExecutorService EXPLAIN_EXECUTOR = new ThreadPoolExecutor(
+            1, 1, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(8), runnable -> {
+        final Thread thread = new Thread(runnable, "query-explain");
+        thread.setDaemon(true);
+        return thread;
+    }, new ThreadPoolExecutor.DiscardPolicy());
+
+    @Nullable
+    static Shape shape(@Nonnull String sql) {
+        if (!ENABLED) return null;
+
+        final Shape shape = SHAPES_BY_SQL.get(sql);
+        if (shape != null || SHAPES_BY_SQL.size() >= MAX_SHAPES) return shape;
+
+        return SHAPES_BY_SQL.computeIfAbsent(sql, k -> SHAPES.computeIfAbsent(normalize(k), Shape::new));
+    }
+
+    @Nonnull
+    public static JSONObject toJSON(int limit, @Nonnull String sort) {
+        final ToDoubleFunction<Shape> key = switch (sort) {
+            case "max" -> shape -> shape.maxNanos.get();
+            case "mean" -> shape -> (double) shape.totalNanos.sum() / Math.max(shape.calls.sum(), 1);
+            case "calls" -> shape -> shape.calls.sum();
+            default -> shape -> shape.totalNanos.sum();
+        };
+
+        final List<Shape> top = SHAPES.values().stream()
+                .sorted(Comparator.comparingDouble(key).reversed())
+                .limit(limit)
+                .toList();
+
+        final JSONArray queries = new JSONArray();
+        for (final Shape shape : top) {
+            queries.put(shape.toJSON());
+        }
+
+        final JSONArray slow = new JSONArray();
+        synchronized (SLOW_LOG) {
+            SLOW_LOG.descendingIterator().forEachRemaining(slow::put);
+        }
+
+        return new JSONObject()
+                .put("slowThresholdMs", TimeUnit.NANOSECONDS.toMillis(SLOW_THRESHOLD_NANOS))
+                .put("queries", queries)
+                .put("slow", slow);
+    }
+
+    public static void reset() {
+        SHAPES_BY_SQL.clear();
+        SHAPES.clear();
+        synchronized (SLOW_LOG) {
+            SLOW_LOG.clear();
+        }
+    }
+
+    private static String normalize(String sql) {
+        return sql.strip().replaceAll("\\s+", " ");
+    }
+
+    private static String redactPlan(String plan) {
+        return PLAN_CONDITION.matcher(plan).replaceAll(line -> Matcher.quoteReplacement(
+                line.group(1) + PLAN_CONSTANT.matcher(line.group(2)).replaceAll("?")
+        ));
+    }
+
+    static class Shape {
+        private final String sql;
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+        private final LongAdder rows = new LongAdder();
+        private final LongAdder slowCalls = new LongAdder();
+        private final boolean readOnly;
+        private volatile long explainedAt;
+        private volatile String plan;
+
+        private Shape(String sql) {
+            this.sql = sql;
+            this.readOnly = (sql.regionMatches(true, 0, "SELECT", 0, 6) || sql.regionMatches(true, 0, "WITH", 0, 4))
+                            && !NOT_READ_ONLY.matcher(sql).find();
+        }
+
+        // Only the shape is logged, the bound values never leave the statement
+        void record(long nanos, @Nonnull Statement statement) {
+            this.calls.increment();
+            this.totalNanos.add(nanos);
+            this.maxNanos.accumulate(nanos);
+
+            if (nanos < SLOW_THRESHOLD_NANOS) return;
+
+            this.slowCalls.increment();
+
+            synchronized (SLOW_LOG) {
+                if (SLOW_LOG.size() >= SLOW_LOG_SIZE) SLOW_LOG.pollFirst();
+                SLOW_LOG.addLast(new JSONObject()
+                        .put("at", Instant.now().toString())
+                        .put("durationMs", nanos / 1e6)
+                        .put("sql", this.sql)
+                );
+            }
+
+            final long now = System.currentTimeMillis();
+            if (EXPLAIN && now - this.explainedAt >= EXPLAIN_INTERVAL_MS) {
+                this.explainedAt = now;
+                // toString() has the parameters inlined, the plan needs them to be executed
+                final String executed = statement.toString();
+                EXPLAIN_EXECUTOR.execute(() -> this.explain(executed));
+            }
+        }
+
+        void addRows(long count) {
+            this.rows.add(count);
+        }
+
+        // Counts the rows the caller actually reads, every other call goes straight to the driver's result set
+        @Nonnull
+        ResultSet countRows(@Nonnull ResultSet result) {
+            return (ResultSet) Proxy.newProxyInstance(
+                    ResultSet.class.getClassLoader(),
+                    new Class<?>[]{ResultSet.class},
+                    (proxy, method, args) -> {
+                        final Object value;
+                        try {
+                            value = method.invoke(result, args);
+                        } catch (InvocationTargetException e) {
+                            throw e.getCause();
+                        }
+                        if (method.equals(RESULT_NEXT) && Boolean.TRUE.equals(value)) this.rows.increment();
+                        return value;
+                    }
+            );
+        }
+
+        private void explain(String executed) {
+            // Run in its own transaction on another connection and rolled back, so nothing it touches sticks
+            try (final DatabaseConnection db = new DatabaseConnection()) {
+                this.plan = redactPlan(db.explain(executed, this.readOnly, EXPLAIN_STATEMENT_TIMEOUT));
+            } catch (SQLException | RuntimeException e) {
+                Logger.warn("[queries] Could not explain slow query: " + e.getMessage());
+            }
+        }
+
+        @Nonnull
+        private JSONObject toJSON() {
+            final long calls = this.calls.sum();
+            final long totalNanos = this.totalNanos.sum();
+
+            return new JSONObject()
+                    .put("sql", this.sql)
+                    .put("calls", calls)
+                    .put("slowCalls", this.slowCalls.sum())
+                    .put("totalMs", totalNanos / 1e6)
+                    .put("meanMs", calls > 0 ? totalNanos / 1e6 / calls : 0)
+                    .put("maxMs", this.maxNanos.get() / 1e6)
+                    .put("rows", this.rows.sum())
+                    .put("meanRows", calls > 0 ? (double) this.rows.sum() / calls : 0)
+                    .put("readOnly", this.readOnly)
+                    .put("plan", this.plan != null ? this.plan : JSONObject.NULL)
+                    .put("planCapturedAt", this.plan != null ? Instant.ofEpochMilli(this.explainedAt).toString()
+                            : JSONObject.NULL);
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package org.dbuniproject.api.db;
+
+import org.dbuniproject.api.Util;
+import org.dbuniproject.api.db.structures.Parameters;
+import org.dbuniproject.api.db.structures.Region;
+import org.dbuniproject.api.logging.Logger;
+import org.json.JSONObject;
+
+import java.util.Collections;
+import java.util.List;
+
+public class ReferenceDataCache {
+    private static final long REFRESH_INTERVAL_MS = Util.getLongSetting("REFERENCE_CACHE_REFRESH_MS", 300_000);
+
+    public static final CachedQuery<List<Region>> REGIONS = new CachedQuery<>(
+            "regions",
+            REFRESH_INTERVAL_MS,
+            db -> Collections.unmodifiableList(db.getRegionsWithCommunes())
+    );
+
+    public static final CachedQuery<List<JSONObject>> PRODUCT_SIZES = new CachedQuery<>(
+            "product sizes",
+            REFRESH_INTERVAL_MS,
+            db -> Collections.unmodifiableList(db.getProductSizes())
+    );
+
+    public static final CachedQuery<List<JSONObject>> PRODUCT_TYPES = new CachedQuery<>(
+            "product types",
+            REFRESH_INTERVAL_MS,
+            db -> Collections.unmodifiableList(db.getProductTypes())
+    );
+
+    public static final CachedQuery<List<JSONObject>> BRANDS = new CachedQuery<>(
+            "brands",
+            REFRESH_INTERVAL_MS,
+            db -> Collections.unmodifiableList(db.getBrands())
+    );
+
+    public static final CachedQuery<List<String>> PRODUCT_COLORS = new CachedQuery<>(
+            "product colors",
+            REFRESH_INTERVAL_MS,
+            db -> Collections.unmodifiableList(db.getProductColors())
+    );
+
+    // Invalidated by ParametersListener when LISTEN is enabled, otherwise picked up on the next refresh
+    public static final CachedQuery<Parameters> PARAMETERS = new CachedQuery<>(
+            "parameters",
+            REFRESH_INTERVAL_MS,
+            db -> {
+                final Parameters parameters = db.getParameters();
+                if (db.matchesDatabaseTax(parameters)) return parameters;
+
+                Logger.warn("[cache] Prices taxed in the API differ from project.aplicar_iva, taxing them in SQL.");
+                return parameters.withTaxInDatabase();
+            }
+    );
+}
@@ -0,0 +1,48 @@
+package org.dbuniproject.api.db;
+
+import org.dbuniproject.api.Api;
+import org.dbuniproject.api.logging.Logger;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.Objects;
+
+// Tables owned by the API itself, applied in order at startup and recorded so each one only runs once
+public class SchemaMigrations {
+    private static final String[] MIGRATIONS = {
+            "001_venta_ingesta.sql",
+            "002_api_idempotencia.sql",
+            "003_parametros_notify.sql",
+            "004_venta_mensual.sql",
+            "005_venta_diaria.sql",
+            "006_empleado.sql",
+            "007_venta_diaria_producto_total.sql",
+    };
+
+    public static void run() {
+        if (!Boolean.parseBoolean(Api.DOTENV.get("DB_MIGRATE", "true"))) return;
+
+        try (final DatabaseConnection db = new DatabaseConnection()) {
+            for (final String name : MIGRATIONS) {
+                if (db.applyMigration(name, readMigration(name))) {
+                    Logger.log(Logger.Level.INFO, "Applied database migration " + name + ".");
+                }
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static String readMigration(String name) {
+        try (final InputStream stream = SchemaMigrations.class.getResourceAsStream("/db/migrations/" + name)) {
+            return new String(
+                    Objects.requireNonNull(stream, "Missing migration " + name).readAllBytes(),
+                    StandardCharsets.UTF_8
+            );
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
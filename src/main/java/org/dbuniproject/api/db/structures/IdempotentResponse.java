@@ -0,0 +1,13 @@
+package org.dbuniproject.api.db.structures;
+
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+
+// fingerprint identifies the request body the response was produced for
+public record IdempotentResponse(
+        @Nonnull String fingerprint,
+        int status,
+        @Nullable String contentType,
+        @Nonnull String body
+) {
+}
@@ -0,0 +1,72 @@
+package org.dbuniproject.api.db.structures;
+
+import jakarta.annotation.Nonnull;
+import org.dbuniproject.api.json.JSONEncodable;
+import org.json.JSONObject;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+// Row of project.parametros, the arithmetic mirrors project.aplicar_iva and the salary query it replaces.
+// taxedInApi is false when the API's tax arithmetic was found to disagree with the database function, in which case
+// prices have to be taxed in SQL.
+public record Parameters(
+        @Nonnull BigDecimal tax,
+        @Nonnull BigDecimal commission,
+        int fullTimeBaseSalary,
+        int partTimeBaseSalary,
+        boolean taxedInApi
+) implements JSONEncodable {
+    // Decimal arithmetic with half up rounding, the same as ROUND over a NUMERIC, floats lose pesos on large prices
+    public int applyTax(int priceWithoutTax) {
+        return Math.toIntExact(this.taxed(priceWithoutTax));
+    }
+
+    // Smallest untaxed price whose taxed price is at least the given one, so price filters stay on the raw column
+    public int lowestPriceWithoutTax(int minPrice) {
+        long price = (long) Math.floor(minPrice / (1 + this.tax.doubleValue()));
+        while (this.taxed(price) < minPrice) price++;
+        while (this.taxed(price - 1) >= minPrice) price--;
+        return (int) price;
+    }
+
+    // Largest untaxed price whose taxed price is at most the given one. Searched in longs, since the taxed price of
+    // the bound's neighbours may not fit in an int when the bound is close to the largest price.
+    public int highestPriceWithoutTax(int maxPrice) {
+        long price = (long) Math.ceil(maxPrice / (1 + this.tax.doubleValue()));
+        while (this.taxed(price) > maxPrice) price--;
+        while (this.taxed(price + 1) <= maxPrice) price++;
+        return (int) price;
+    }
+
+    // Truncated like CAST(TRUNC(SUM(total) * porcentaje_comision) AS INT) over the NUMERIC column
+    public int salary(long totalSales, boolean fullTime) {
+        return BigDecimal.valueOf(totalSales)
+                       .multiply(this.commission)
+                       .setScale(0, RoundingMode.DOWN)
+                       .intValueExact()
+               + (fullTime ? this.fullTimeBaseSalary : this.partTimeBaseSalary);
+    }
+
+    private long taxed(long priceWithoutTax) {
+        return BigDecimal.valueOf(priceWithoutTax)
+                .multiply(BigDecimal.ONE.add(this.tax))
+                .setScale(0, RoundingMode.HALF_UP)
+                .longValueExact();
+    }
+
+    @Nonnull
+    public Parameters withTaxInDatabase() {
+        return new Parameters(this.tax, this.commission, this.fullTimeBaseSalary, this.partTimeBaseSalary, false);
+    }
+
+    @Nonnull
+    @Override
+    public JSONObject toJSON() {
+        return new JSONObject()
+                .put("tax", this.tax)
+                .put("commission", this.commission)
+                .put("fullTimeBaseSalary", this.fullTimeBaseSalary)
+                .put("partTimeBaseSalary", this.partTimeBaseSalary);
+    }
+}
@@ -0,0 +1,8 @@
+package org.dbuniproject.api.db.structures;
+
+import jakarta.annotation.Nonnull;
+
+import java.sql.Timestamp;
+
+public record PersistedIdempotentResponse(@Nonnull IdempotentResponse response, @Nonnull Timestamp expiresAt) {
+}
@@ -0,0 +1,47 @@
+package org.dbuniproject.api.db.structures;
+
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+// Keyset position in a product search, only valid for the sort order it was issued under
+public record ProductCursor(@Nonnull String sort, int priceWithoutTax, @Nonnull String name, long sku) {
+    @Nonnull
+    public static String sortKey(@Nullable Boolean sortByNameAsc, @Nullable Boolean sortByPriceAsc) {
+        return (sortByPriceAsc == null ? "" : sortByPriceAsc ? "price:asc," : "price:desc,")
+               + (sortByNameAsc == null ? "" : sortByNameAsc ? "name:asc," : "name:desc,")
+               + "sku:asc";
+    }
+
+    @Nullable
+    public static ProductCursor decode(@Nonnull String encoded) {
+        try {
+            final JSONObject json = new JSONObject(
+                    new String(Base64.getUrlDecoder().decode(encoded), StandardCharsets.UTF_8)
+            );
+            return new ProductCursor(
+                    json.getString("sort"),
+                    json.getInt("priceWithoutTax"),
+                    json.getString("name"),
+                    json.getLong("sku")
+            );
+        } catch (IllegalArgumentException | JSONException e) {
+            return null;
+        }
+    }
+
+    @Nonnull
+    public String encode() {
+        final String raw = new JSONObject()
+                .put("sort", this.sort)
+                .put("priceWithoutTax", this.priceWithoutTax)
+                .put("name", this.name)
+                .put("sku", this.sku)
+                .toString();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+}
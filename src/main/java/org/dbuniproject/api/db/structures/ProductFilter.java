@@ -0,0 +1,19 @@
+package org.dbuniproject.api.db.structures;
+
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+
+import java.util.List;
+
+public record ProductFilter(
+        @Nullable String name,
+        @Nonnull List<Integer> types,
+        @Nonnull List<Integer> sizes,
+        @Nonnull List<Integer> brands,
+        @Nonnull List<Integer> colors,
+        @Nonnull List<Integer> regions,
+        @Nonnull List<Integer> communes,
+        @Nullable Integer minPrice,
+        @Nullable Integer maxPrice
+) {
+}
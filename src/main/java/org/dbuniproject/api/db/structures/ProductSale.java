@@ -1,13 +1,10 @@
 package org.dbuniproject.api.db.structures;
 
 import jakarta.annotation.Nonnull;
-import org.dbuniproject.api.db.DatabaseConnection;
 import org.dbuniproject.api.json.JSONEncodable;
 import org.jetbrains.annotations.NotNull;
 import org.json.JSONObject;
 
-import java.sql.SQLException;
-
 public record ProductSale(long sku, int quantity) implements JSONEncodable, Validatable {
     @SuppressWarnings("unused")
     public ProductSale(JSONObject json) {
@@ -22,6 +19,7 @@ public record ProductSale(long sku, int quantity) implements JSONEncodable, Vali
                 .put("quantity", this.quantity);
     }
 
+    // Product existence is checked set-wise by Sale.validate, so this only covers the fields themselves
     @Override
     public void validate(@NotNull String parentName) throws ValidationException {
         final String keyPrefix = !parentName.isEmpty() ? parentName + "." : "";
@@ -30,17 +28,6 @@ public record ProductSale(long sku, int quantity) implements JSONEncodable, Vali
             throw new ValidationException(keyPrefix + "sku", "Product sku is empty.");
         }
 
-        try (final DatabaseConnection db = new DatabaseConnection()) {
-            if (!db.doesProductExist(this.sku)) {
-                throw new ValidationException(
-                        keyPrefix + "sku",
-                        "Product with sku " + this.sku + " does not exist"
-                );
-            }
-        } catch (SQLException e) {
-            throw new RuntimeException(e);
-        }
-
         if (this.quantity == -1) {
             throw new ValidationException(keyPrefix + "quantity", "Quantity is empty.");
         }
@@ -0,0 +1,4 @@
+package org.dbuniproject.api.db.structures;
+
+public record ProductSaleAvailability(long sku, boolean exists, boolean soldAtStore, int stock) {
+}
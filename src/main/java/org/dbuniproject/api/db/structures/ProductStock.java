@@ -1,6 +1,8 @@
 package org.dbuniproject.api.db.structures;
 
-public class ProductStock {
+import org.jetbrains.annotations.NotNull;
+
+public class ProductStock implements Validatable {
     public final long productSku;
     public final int storeId;
     public int min;
@@ -16,4 +18,21 @@ public class ProductStock {
         this.forSale = forSale;
         this.inStorage = inStorage;
     }
+
+    @Override
+    public void validate(@NotNull String parentName) throws ValidationException {
+        final String keyPrefix = !parentName.isEmpty() ? parentName + "." : "";
+
+        if (this.max <= this.min) {
+            throw new ValidationException(keyPrefix + "max", "Max must be greater than min.");
+        }
+
+        if (this.forSale < 0) {
+            throw new ValidationException(keyPrefix + "forSale", "Stock for sale must be greater than zero.");
+        }
+
+        if (this.inStorage < 0) {
+            throw new ValidationException(keyPrefix + "inStorage", "Stock in storage must be greater than zero.");
+        }
+    }
 }
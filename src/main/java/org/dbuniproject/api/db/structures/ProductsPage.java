@@ -0,0 +1,11 @@
+package org.dbuniproject.api.db.structures;
+
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+import org.json.JSONObject;
+
+import java.util.List;
+
+// nextCursor is null on the last page
+public record ProductsPage(@Nonnull List<JSONObject> products, @Nullable ProductCursor nextCursor) {
+}
@@ -11,6 +11,9 @@ import org.json.JSONObject;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 
 public record Sale(
@@ -22,7 +25,18 @@ public record Sale(
         int total,
         @Nonnull ArrayList<ProductSale> products
 ) implements JSONEncodable, Validatable {
-    public Sale(JSONObject json, @Nonnull String cashierRut) throws ValidationException {
+    public Sale(
+            JSONObject json,
+            @Nonnull String cashierRut,
+            @Nonnull DatabaseConnection db
+    ) throws ValidationException, SQLException {
+        this(json, cashierRut);
+
+        this.validate(db);
+    }
+
+    // Leaves validation to the caller, used when several sales are checked against the database at once
+    public Sale(JSONObject json, @Nonnull String cashierRut) {
         this(
                 -1,
                 new Date(),
@@ -32,8 +46,6 @@ public record Sale(
                 -1,
                 Util.jsonArrayToList(json.optJSONArray("products", new JSONArray()), ProductSale.class)
         );
-
-        this.validate();
     }
 
     @Nonnull
@@ -50,6 +62,28 @@ public record Sale(
 
     @Override
     public void validate(@NotNull String parentName) throws ValidationException {
+        try (final DatabaseConnection db = new DatabaseConnection()) {
+            this.validate(db);
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public void validate(@Nonnull DatabaseConnection db) throws ValidationException, SQLException {
+        this.validateFields();
+
+        if (!db.doesCashierExist(this.cashierRut)) {
+            throw new ValidationException("cashierRut", "Cashier does not exist.");
+        }
+
+        if (!db.doesClientExist(this.clientRut)) {
+            throw new ValidationException("clientRut", "Client does not exist.");
+        }
+
+        this.validateAvailability(db.getProductSaleAvailability(this.cashierRut, this.products), new HashMap<>());
+    }
+
+    public void validateFields() throws ValidationException {
         if (this.cashierRut.isEmpty()) {
             throw new ValidationException("cashierRut", "Cashier rut is empty.");
         }
@@ -58,18 +92,6 @@ public record Sale(
             throw new ValidationException("clientRut", "Client rut is empty.");
         }
 
-        try (final DatabaseConnection db = new DatabaseConnection()) {
-            if (!db.doesCashierExist(this.cashierRut)) {
-                throw new ValidationException("cashierRut", "Cashier does not exist.");
-            }
-
-            if (!db.doesClientExist(this.clientRut)) {
-                throw new ValidationException("clientRut", "Client does not exist.");
-            }
-        } catch (SQLException e) {
-            throw new RuntimeException(e);
-        }
-
         if (this.type == Type.INVALID) {
             throw new ValidationException("type", "Missing or invalid receipt type.");
         }
@@ -79,41 +101,51 @@ public record Sale(
         }
 
         for (int i = 0; i < this.products.size(); i++) {
-            final ProductSale productSale = this.products.get(i);
-            productSale.validate("products[" + i + "]");
+            this.products.get(i).validate("products[" + i + "]");
+        }
+    }
+
+    // availability holds one entry per product line. reserved holds units already claimed by earlier sales
+    // checked against the same stock, and is only updated when every line of this sale fits.
+    public void validateAvailability(
+            @Nonnull List<ProductSaleAvailability> availability,
+            @Nonnull Map<Long, Integer> reserved
+    ) throws ValidationException {
+        final HashMap<Long, Integer> claimed = new HashMap<>();
 
+        for (int i = 0; i < this.products.size(); i++) {
+            final ProductSale productSale = this.products.get(i);
+            final ProductSaleAvailability lineAvailability = availability.get(i);
             final long sku = productSale.sku();
 
-            try (final DatabaseConnection db = new DatabaseConnection()) {
-                if (!db.isProductSoldAtEmployeeStore(productSale.sku(), this.cashierRut)) {
-                    throw new ValidationException(
-                            "products[" + i + "]",
-                            "Product with sku " + sku + " not sold at " + this.cashierRut + "'s store."
-                    );
-                }
-
-                final ProductStock stock = db.getProductStock(productSale.sku(), this.cashierRut);
-                final int currentStock = stock != null ? stock.forSale + stock.inStorage : -1;
-
-                if (currentStock == -1) {
-                    // Shouldn't happen, just in case
-                    throw new ValidationException(
-                            "products[" + i + "]",
-                            "Product with sku " + sku + " not sold at " + this.cashierRut + "'s store."
-                    );
-                }
-
-                if (currentStock - productSale.quantity() < 0) {
-                    throw new ValidationException(
-                            "products[" + i + "]",
-                            "Can't sell " + productSale.quantity() + " of product " + sku
-                            + ". Current stock is " + currentStock + "."
-                    );
-                }
-            } catch (SQLException e) {
-                throw new RuntimeException(e);
+            if (!lineAvailability.exists()) {
+                throw new ValidationException(
+                        "products[" + i + "].sku",
+                        "Product with sku " + sku + " does not exist"
+                );
             }
+
+            if (!lineAvailability.soldAtStore() || lineAvailability.stock() == -1) {
+                throw new ValidationException(
+                        "products[" + i + "]",
+                        "Product with sku " + sku + " not sold at " + this.cashierRut + "'s store."
+                );
+            }
+
+            final int currentStock = lineAvailability.stock() - reserved.getOrDefault(sku, 0);
+
+            if (currentStock - productSale.quantity() < 0) {
+                throw new ValidationException(
+                        "products[" + i + "]",
+                        "Can't sell " + productSale.quantity() + " of product " + sku
+                        + ". Current stock is " + currentStock + "."
+                );
+            }
+
+            claimed.merge(sku, productSale.quantity(), Integer::sum);
         }
+
+        claimed.forEach((sku, quantity) -> reserved.merge(sku, quantity, Integer::sum));
     }
 
     public enum Type {
@@ -0,0 +1,50 @@
+package org.dbuniproject.api.db.structures;
+
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.Base64;
+
+// Keyset position in the (date, id) ordering of sales, handed to clients as an opaque string
+public record SaleCursor(@Nonnull Timestamp date, long id) {
+    private static final String VERSION = "v1";
+
+    @Nonnull
+    public static SaleCursor after(@Nonnull Sale sale) {
+        // Sales read from the database carry a Timestamp, keeping its microseconds avoids repeating rows across pages
+        final Timestamp date = sale.date() instanceof Timestamp timestamp
+                ? timestamp
+                : new Timestamp(sale.date().getTime());
+        return new SaleCursor(date, sale.id());
+    }
+
+    @Nullable
+    public static SaleCursor decode(@Nonnull String encoded) {
+        final String decoded;
+        try {
+            decoded = new String(Base64.getUrlDecoder().decode(encoded), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+
+        final String[] parts = decoded.split(":");
+        if (parts.length != 4 || !parts[0].equals(VERSION)) return null;
+
+        try {
+            final Instant instant = Instant.ofEpochSecond(Long.parseLong(parts[1]), Long.parseLong(parts[2]));
+            return new SaleCursor(Timestamp.from(instant), Long.parseLong(parts[3]));
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    @Nonnull
+    public String encode() {
+        final Instant instant = this.date.toInstant();
+        final String raw = VERSION + ":" + instant.getEpochSecond() + ":" + instant.getNano() + ":" + this.id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+}
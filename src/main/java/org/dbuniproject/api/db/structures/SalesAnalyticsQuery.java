@@ -0,0 +1,48 @@
+package org.dbuniproject.api.db.structures;
+
+import jakarta.annotation.Nonnull;
+
+import java.sql.Date;
+
+// Dates are whole days, from inclusive and to exclusive
+public record SalesAnalyticsQuery(
+        int storeId,
+        @Nonnull Period period,
+        @Nonnull GroupBy groupBy,
+        @Nonnull Date from,
+        @Nonnull Date to
+) {
+    public enum Period {
+        DAY("day"),
+        WEEK("week"),
+        MONTH("month");
+
+        public final String name;
+
+        Period(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public String toString() {
+            return this.name;
+        }
+    }
+
+    public enum GroupBy {
+        STORE("store"),
+        CASHIER("cashier"),
+        PRODUCT("product");
+
+        public final String name;
+
+        GroupBy(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public String toString() {
+            return this.name;
+        }
+    }
+}
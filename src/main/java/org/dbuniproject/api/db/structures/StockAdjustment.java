@@ -0,0 +1,31 @@
+package org.dbuniproject.api.db.structures;
+
+import org.jetbrains.annotations.NotNull;
+import org.json.JSONObject;
+
+// Relative change to a stock row, moveToSale shifts units from storage to the sales floor
+public record StockAdjustment(long sku, int forSaleDelta, int inStorageDelta) implements Validatable {
+    public StockAdjustment(JSONObject json) {
+        this(
+                json.optLong("sku", -1),
+                json.optInt("forSale", 0) + json.optInt("moveToSale", 0),
+                json.optInt("inStorage", 0) - json.optInt("moveToSale", 0)
+        );
+    }
+
+    @Override
+    public void validate(@NotNull String parentName) throws ValidationException {
+        final String keyPrefix = !parentName.isEmpty() ? parentName + "." : "";
+
+        if (this.sku == -1) {
+            throw new ValidationException(keyPrefix + "sku", "Product sku is empty.");
+        }
+
+        if (this.forSaleDelta == 0 && this.inStorageDelta == 0) {
+            throw new ValidationException(
+                    !parentName.isEmpty() ? parentName : "body",
+                    "Expected a non-zero forSale, inStorage or moveToSale."
+            );
+        }
+    }
+}
@@ -0,0 +1,7 @@
+package org.dbuniproject.api.db.structures;
+
+import jakarta.annotation.Nonnull;
+
+// When the adjustment was not applied, stock holds the row as it was read by the same statement
+public record StockAdjustmentResult(boolean applied, @Nonnull ProductStock stock) {
+}
@@ -0,0 +1,41 @@
+package org.dbuniproject.api.db.structures;
+
+import jakarta.annotation.Nonnull;
+import org.jetbrains.annotations.NotNull;
+import org.json.JSONObject;
+
+// Fields left at -1 keep the value currently stored
+public record StockUpdate(long sku, int min, int max, int forSale, int inStorage) implements Validatable {
+    public StockUpdate(JSONObject json) {
+        this(
+                json.optLong("sku", -1),
+                json.optInt("min", -1),
+                json.optInt("max", -1),
+                json.optInt("forSale", -1),
+                json.optInt("inStorage", -1)
+        );
+    }
+
+    public void applyTo(@Nonnull ProductStock stock) {
+        if (this.min != -1) stock.min = this.min;
+        if (this.max != -1) stock.max = this.max;
+        if (this.forSale != -1) stock.forSale = this.forSale;
+        if (this.inStorage != -1) stock.inStorage = this.inStorage;
+    }
+
+    @Override
+    public void validate(@NotNull String parentName) throws ValidationException {
+        final String keyPrefix = !parentName.isEmpty() ? parentName + "." : "";
+
+        if (this.sku == -1) {
+            throw new ValidationException(keyPrefix + "sku", "Product sku is empty.");
+        }
+
+        if (this.min == -1 && this.max == -1 && this.forSale == -1 && this.inStorage == -1) {
+            throw new ValidationException(
+                    !parentName.isEmpty() ? parentName : "body",
+                    "Expected at least one of min, max, forSale or inStorage."
+            );
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package org.dbuniproject.api.endpoints;
+
+import io.javalin.http.Context;
+import io.javalin.http.HttpStatus;
+import org.dbuniproject.api.Api;
+import org.dbuniproject.api.Util;
+import org.dbuniproject.api.db.QueryStats;
+
+import java.util.List;
+
+public class AdminQueriesEndpoint extends Endpoint implements Endpoint.GetMethod, Endpoint.DeleteMethod {
+    private static final int DEFAULT_LIMIT = 20;
+    private static final List<String> SORTS = List.of("total", "max", "mean", "calls");
+    // Query shapes and their plans describe the schema and indexes, so the endpoint is disabled unless a token is set
+    private static final String TOKEN = Api.DOTENV.get("ADMIN_TOKEN", "");
+
+    public AdminQueriesEndpoint() {
+        super("/admin/queries");
+    }
+
+    @Override
+    public void get(Context ctx) throws EndpointException {
+        authorize(ctx);
+
+        final String limitParam = ctx.queryParam("limit");
+        final Integer limit = Util.getQueryParam(ctx, "limit", Integer.class);
+        if (limitParam != null && (limit == null || limit <= 0)) {
+            throw new EndpointException(HttpStatus.BAD_REQUEST, "Limit must be a positive integer.");
+        }
+
+        final String sort = ctx.queryParam("sort");
+        if (sort != null && !SORTS.contains(sort)) {
+            throw new EndpointException(HttpStatus.BAD_REQUEST, "Sort must be one of total, max, mean or calls.");
+        }
+
+        ctx.status(HttpStatus.OK).json(QueryStats.toJSON(
+                limit != null ? limit : DEFAULT_LIMIT,
+                sort != null ? sort : "total"
+        ));
+    }
+
+    @Override
+    public void delete(Context ctx) throws EndpointException {
+        authorize(ctx);
+
+        QueryStats.reset();
+        ctx.status(HttpStatus.NO_CONTENT);
+    }
+
+    private static void authorize(Context ctx) throws EndpointException {
+        if (TOKEN.isEmpty()) {
+            throw new EndpointException(HttpStatus.NOT_FOUND, "Not found.");
+        }
+
+        if (!hasBearerToken(ctx, TOKEN)) {
+            throw new EndpointException(HttpStatus.UNAUTHORIZED, "Invalid admin token.");
+        }
+    }
+}
@@ -1,18 +1,32 @@
 package org.dbuniproject.api.endpoints;
 
+import com.google.common.hash.Hashing;
+import io.javalin.http.ContentType;
 import io.javalin.http.Context;
 import io.javalin.http.HandlerType;
 import io.javalin.http.Header;
 import io.javalin.http.HttpStatus;
 import jakarta.annotation.Nullable;
+import org.dbuniproject.api.IdempotencyStore;
 import org.dbuniproject.api.SessionTokenManager;
+import org.dbuniproject.api.db.CachedQuery;
+import org.dbuniproject.api.db.structures.IdempotentResponse;
+import org.dbuniproject.api.logging.Logger;
 import org.json.JSONObject;
 
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.sql.SQLException;
 import java.util.Objects;
 
 public abstract class Endpoint {
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    public static final String TOTAL_COUNT_HEADER = "X-Total-Count";
+    public static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+    public static final String IDEMPOTENT_REPLAYED_HEADER = "Idempotent-Replayed";
+    private static final String IDEMPOTENCY_KEY_ATTRIBUTE = "idempotencyKey";
+    private static final int MAX_IDEMPOTENCY_KEY_LENGTH = 255;
+
     public final String path;
 
     public Endpoint(String path) {
@@ -20,15 +34,14 @@ public abstract class Endpoint {
     }
 
     public static void beforeMatched(Context ctx) throws EndpointException {
-        final String now = LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME)
-                .replaceAll("T|\\.\\d+$", " ")
-                .stripTrailing();
-
         final HandlerType method = ctx.method();
-        System.out.println("[" + now + "] " + method.name() + " " + ctx.matchedPath()
-                           + "\nbody: " + ctx.body()
-                           + "\nquery: " + ctx.queryString()
-        );
+
+        if (Logger.shouldLog(Logger.Level.INFO)) {
+            Logger.log(Logger.Level.INFO, method.name() + " " + ctx.matchedPath()
+                                          + "\nbody: " + ctx.body()
+                                          + "\nquery: " + ctx.queryString()
+            );
+        }
 
         if (method == HandlerType.POST) {
             if (!Objects.equals(ctx.header(Header.CONTENT_TYPE), "application/json")) {
@@ -37,15 +50,129 @@ public abstract class Endpoint {
 
             // check if valid json
             ctx.bodyAsClass(JSONObject.class);
+
+            final String idempotencyKey = ctx.header(IDEMPOTENCY_KEY_HEADER);
+            if (idempotencyKey != null) {
+                beginIdempotentRequest(ctx, idempotencyKey);
+            }
         }
     }
 
+    public static void afterMatched(Context ctx) {
+        final String scopedKey = ctx.attribute(IDEMPOTENCY_KEY_ATTRIBUTE);
+        if (scopedKey == null) return;
+
+        // Server errors are not stored so the client can retry them
+        if (ctx.statusCode() >= 500) {
+            IdempotencyStore.abandon(scopedKey);
+            return;
+        }
+
+        final String body = ctx.result();
+        IdempotencyStore.complete(scopedKey, ctx.statusCode(), ctx.res().getContentType(), body != null ? body : "");
+    }
+
+    private static void beginIdempotentRequest(Context ctx, String idempotencyKey) throws EndpointException {
+        if (idempotencyKey.isBlank() || idempotencyKey.length() > MAX_IDEMPOTENCY_KEY_LENGTH) {
+            ctx.skipRemainingHandlers();
+            throw new EndpointException(
+                    HttpStatus.BAD_REQUEST,
+                    IDEMPOTENCY_KEY_HEADER + " must have 1 to " + MAX_IDEMPOTENCY_KEY_LENGTH + " characters."
+            );
+        }
+
+        // Keys are scoped to the caller and the route, so two clients picking the same key never collide. The caller is
+        // the employee rather than their session token, so a retry after logging in again still replays.
+        final SessionTokenManager.Token sessionToken = getSessionToken(ctx);
+        final String caller = sessionToken != null
+                ? sessionToken.type() + ":" + sessionToken.rut()
+                : "ip:" + ctx.ip();
+        final String scope = caller + "\n" + ctx.method() + " " + ctx.path() + "\n" + idempotencyKey;
+        final String scopedKey = Hashing.sha256().hashString(scope, StandardCharsets.UTF_8).toString();
+        final String fingerprint = Hashing.sha256().hashString(ctx.body(), StandardCharsets.UTF_8).toString();
+
+        final IdempotencyStore.Outcome outcome = IdempotencyStore.begin(scopedKey, fingerprint);
+
+        switch (outcome.type()) {
+            case STARTED -> ctx.attribute(IDEMPOTENCY_KEY_ATTRIBUTE, scopedKey);
+            case REPLAY -> {
+                final IdempotentResponse response = Objects.requireNonNull(outcome.response());
+                ctx.skipRemainingHandlers();
+                ctx.status(response.status()).header(IDEMPOTENT_REPLAYED_HEADER, "true").result(response.body());
+                if (response.contentType() != null) {
+                    ctx.contentType(response.contentType());
+                }
+            }
+            case IN_PROGRESS -> {
+                ctx.skipRemainingHandlers();
+                throw new EndpointException(
+                        HttpStatus.CONFLICT,
+                        "A request with this " + IDEMPOTENCY_KEY_HEADER + " is still being processed."
+                );
+            }
+            case MISMATCH -> {
+                ctx.skipRemainingHandlers();
+                throw new EndpointException(
+                        HttpStatus.UNPROCESSABLE_CONTENT,
+                        IDEMPOTENCY_KEY_HEADER + " was already used with a different request body."
+                );
+            }
+        }
+    }
+
+    protected static void respondWithCache(Context ctx, CachedQuery<?> cache) {
+        final CachedQuery.Snapshot<?> snapshot;
+        try {
+            snapshot = cache.get();
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+
+        // no-cache lets clients keep the body but forces them to revalidate it with If-None-Match every time
+        ctx.header(Header.ETAG, snapshot.etag()).header(Header.CACHE_CONTROL, "no-cache");
+
+        if (matchesETag(ctx.header(Header.IF_NONE_MATCH), snapshot.etag())) {
+            ctx.status(HttpStatus.NOT_MODIFIED);
+            return;
+        }
+
+        ctx.status(HttpStatus.OK).contentType(ContentType.APPLICATION_JSON).result(snapshot.json());
+    }
+
+    private static boolean matchesETag(@Nullable String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) return false;
+
+        for (String candidate : ifNoneMatch.split(",")) {
+            candidate = candidate.strip();
+            if (candidate.startsWith("W/")) {
+                candidate = candidate.substring(2);
+            }
+
+            if (candidate.equals("*") || candidate.equals(etag)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
     @Nullable
     protected static SessionTokenManager.Token getSessionToken(Context ctx) {
         final String token = ctx.header(Header.AUTHORIZATION);
         return token != null ? SessionTokenManager.getSessionToken(token) : null;
     }
 
+    // Compared in constant time, these tokens are long lived secrets shared with operators and scrapers
+    protected static boolean hasBearerToken(Context ctx, String token) {
+        final String authorization = ctx.header(Header.AUTHORIZATION);
+        if (authorization == null) return false;
+
+        return MessageDigest.isEqual(
+                authorization.getBytes(StandardCharsets.UTF_8),
+                ("Bearer " + token).getBytes(StandardCharsets.UTF_8)
+        );
+    }
+
     public interface GetMethod {
         void get(Context ctx) throws EndpointException;
     }
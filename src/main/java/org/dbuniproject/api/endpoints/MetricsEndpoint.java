@@ -0,0 +1,25 @@
+package org.dbuniproject.api.endpoints;
+
+import io.javalin.http.Context;
+import io.javalin.http.HttpStatus;
+import org.dbuniproject.api.Api;
+import org.dbuniproject.api.metrics.Metrics;
+
+public class MetricsEndpoint extends Endpoint implements Endpoint.GetMethod {
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+    // Scrapers authenticate with "Authorization: Bearer <token>" when set, otherwise the endpoint is open
+    private static final String TOKEN = Api.DOTENV.get("METRICS_TOKEN", "");
+
+    public MetricsEndpoint() {
+        super("/metrics");
+    }
+
+    @Override
+    public void get(Context ctx) throws EndpointException {
+        if (!TOKEN.isEmpty() && !hasBearerToken(ctx, TOKEN)) {
+            throw new EndpointException(HttpStatus.UNAUTHORIZED, "Invalid metrics token.");
+        }
+
+        ctx.status(HttpStatus.OK).contentType(CONTENT_TYPE).result(Metrics.scrape());
+    }
+}
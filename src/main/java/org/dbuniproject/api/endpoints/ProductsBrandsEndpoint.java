@@ -5,6 +5,7 @@ import io.javalin.http.HttpStatus;
 import io.javalin.validation.Validator;
 import org.dbuniproject.api.SessionTokenManager;
 import org.dbuniproject.api.db.DatabaseConnection;
+import org.dbuniproject.api.db.ReferenceDataCache;
 import org.json.JSONObject;
 
 import java.sql.SQLException;
@@ -19,8 +20,8 @@ public class ProductsBrandsEndpoint extends Endpoint implements Endpoint.GetMeth
         final Validator<Integer> id = ctx.queryParamAsClass("id", Integer.class);
         final String name = ctx.queryParam("name");
 
-        try (final DatabaseConnection db = new DatabaseConnection()) {
-            if (id.hasValue()) {
+        if (id.hasValue()) {
+            try (final DatabaseConnection db = new DatabaseConnection()) {
                 final JSONObject brand = db.getBrand(id.get());
                 if (brand == null) {
                     throw new EndpointException(HttpStatus.NOT_FOUND, "Brand does not exist.");
@@ -28,9 +29,13 @@ public class ProductsBrandsEndpoint extends Endpoint implements Endpoint.GetMeth
 
                 ctx.status(HttpStatus.OK).json(brand);
                 return;
+            } catch (SQLException e) {
+                throw new RuntimeException(e);
             }
+        }
 
-            if (name != null && !name.isEmpty()) {
+        if (name != null && !name.isEmpty()) {
+            try (final DatabaseConnection db = new DatabaseConnection()) {
                 final JSONObject brand = db.getBrand(name);
                 if (brand == null) {
                     throw new EndpointException(HttpStatus.NOT_FOUND, "Brand does not exist.");
@@ -38,12 +43,12 @@ public class ProductsBrandsEndpoint extends Endpoint implements Endpoint.GetMeth
 
                 ctx.status(HttpStatus.OK).json(brand);
                 return;
+            } catch (SQLException e) {
+                throw new RuntimeException(e);
             }
-
-            ctx.status(HttpStatus.OK).json(db.getBrands());
-        } catch (SQLException e) {
-            throw new RuntimeException(e);
         }
+
+        respondWithCache(ctx, ReferenceDataCache.BRANDS);
     }
 
     @SuppressWarnings("DuplicatedCode")
@@ -6,13 +6,20 @@ import org.dbuniproject.api.SessionTokenManager;
 import org.dbuniproject.api.Util;
 import org.dbuniproject.api.db.DatabaseConnection;
 import org.dbuniproject.api.db.structures.Product;
+import org.dbuniproject.api.db.structures.ProductCursor;
+import org.dbuniproject.api.db.structures.ProductFilter;
+import org.dbuniproject.api.db.structures.ProductsPage;
 import org.dbuniproject.api.db.structures.ValidationException;
 import org.json.JSONObject;
 
 import java.sql.SQLException;
 import java.util.List;
+import java.util.Objects;
 
 public class ProductsEndpoint extends Endpoint implements Endpoint.GetMethod, Endpoint.PostMethod {
+    private static final int DEFAULT_PAGE_SIZE = 24;
+    private static final int MAX_PAGE_SIZE = 200;
+
     public ProductsEndpoint() {
         super("/products");
     }
@@ -22,7 +29,7 @@ public class ProductsEndpoint extends Endpoint implements Endpoint.GetMethod, En
         final SessionTokenManager.Token sessionToken = getSessionToken(ctx);
         if (sessionToken != null) {
             try (final DatabaseConnection db = new DatabaseConnection()) {
-                ctx.status(HttpStatus.OK).json(db.getProductsByEmployee(sessionToken.rut()));
+                ctx.status(HttpStatus.OK).writeJsonStream(db.getProductsByEmployee(sessionToken.rut()).stream());
                 return;
             } catch (SQLException e) {
                 throw new RuntimeException(e);
@@ -65,20 +72,54 @@ public class ProductsEndpoint extends Endpoint implements Endpoint.GetMethod, En
                 : sortByPriceString.equalsIgnoreCase("desc") ? Boolean.FALSE
                 : null;
 
+        final ProductFilter filter = new ProductFilter(
+                name,
+                types,
+                sizes,
+                brands,
+                colors,
+                regions,
+                communes,
+                minPrice,
+                maxPrice
+        );
+        final String sort = ProductCursor.sortKey(sortByName, sortByPrice);
+
+        final String cursorParam = ctx.queryParam("cursor");
+        final ProductCursor cursor = cursorParam != null ? ProductCursor.decode(cursorParam) : null;
+        if (cursorParam != null && (cursor == null || !cursor.sort().equals(sort))) {
+            throw new EndpointException(HttpStatus.BAD_REQUEST, "Invalid cursor for this sort order.");
+        }
+
+        final String pageSizeParam = ctx.queryParam("pageSize");
+        final Integer pageSizeValue = Util.getQueryParam(ctx, "pageSize", Integer.class);
+        if (pageSizeParam != null && (pageSizeValue == null || pageSizeValue <= 0)) {
+            throw new EndpointException(HttpStatus.BAD_REQUEST, "Page size must be a positive integer.");
+        }
+
+        final boolean includeTotal = Objects.equals(ctx.queryParam("includeTotal"), "true");
+
         try (final DatabaseConnection db = new DatabaseConnection()) {
-            ctx.status(HttpStatus.OK).json(db.getProducts(
-                    name,
-                    types,
-                    sizes,
-                    brands,
-                    colors,
-                    regions,
-                    communes,
-                    minPrice,
-                    maxPrice,
-                    sortByName,
-                    sortByPrice
-            ));
+            // The count is a second pass over the filtered catalog, so it only runs when asked for
+            if (includeTotal) {
+                ctx.header(TOTAL_COUNT_HEADER, String.valueOf(db.countProducts(filter)));
+            }
+
+            if (pageSizeValue == null && cursor == null) {
+                ctx.status(HttpStatus.OK).writeJsonStream(
+                        db.getProducts(filter, sortByName, sortByPrice, null, 0).products().stream()
+                );
+                return;
+            }
+
+            final int pageSize = Math.min(pageSizeValue != null ? pageSizeValue : DEFAULT_PAGE_SIZE, MAX_PAGE_SIZE);
+            final ProductsPage page = db.getProducts(filter, sortByName, sortByPrice, cursor, pageSize);
+
+            if (page.nextCursor() != null) {
+                ctx.header(NEXT_CURSOR_HEADER, page.nextCursor().encode());
+            }
+
+            ctx.status(HttpStatus.OK).writeJsonStream(page.products().stream());
         } catch (SQLException e) {
             throw new RuntimeException(e);
         }
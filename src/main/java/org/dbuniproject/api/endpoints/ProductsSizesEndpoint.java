@@ -5,6 +5,7 @@ import io.javalin.http.HttpStatus;
 import io.javalin.validation.Validator;
 import org.dbuniproject.api.SessionTokenManager;
 import org.dbuniproject.api.db.DatabaseConnection;
+import org.dbuniproject.api.db.ReferenceDataCache;
 import org.json.JSONObject;
 
 import java.sql.SQLException;
@@ -19,8 +20,8 @@ public class ProductsSizesEndpoint extends Endpoint implements Endpoint.GetMetho
         final Validator<Integer> id = ctx.queryParamAsClass("id", Integer.class);
         final String name = ctx.queryParam("name");
 
-        try (final DatabaseConnection db = new DatabaseConnection()) {
-            if (id.hasValue()) {
+        if (id.hasValue()) {
+            try (final DatabaseConnection db = new DatabaseConnection()) {
                 final JSONObject size = db.getProductSize(id.get());
                 if (size == null) {
                     throw new EndpointException(HttpStatus.NOT_FOUND, "Product size does not exist.");
@@ -28,9 +29,13 @@ public class ProductsSizesEndpoint extends Endpoint implements Endpoint.GetMetho
 
                 ctx.status(HttpStatus.OK).json(size);
                 return;
+            } catch (SQLException e) {
+                throw new RuntimeException(e);
             }
+        }
 
-            if (name != null && !name.isEmpty()) {
+        if (name != null && !name.isEmpty()) {
+            try (final DatabaseConnection db = new DatabaseConnection()) {
                 final JSONObject size = db.getProductSize(name);
                 if (size == null) {
                     throw new EndpointException(HttpStatus.NOT_FOUND, "Product size does not exist.");
@@ -38,12 +43,12 @@ public class ProductsSizesEndpoint extends Endpoint implements Endpoint.GetMetho
 
                 ctx.status(HttpStatus.OK).json(size);
                 return;
+            } catch (SQLException e) {
+                throw new RuntimeException(e);
             }
-
-            ctx.status(HttpStatus.OK).json(db.getProductSizes());
-        } catch (SQLException e) {
-            throw new RuntimeException(e);
         }
+
+        respondWithCache(ctx, ReferenceDataCache.PRODUCT_SIZES);
     }
 
     @SuppressWarnings("DuplicatedCode")
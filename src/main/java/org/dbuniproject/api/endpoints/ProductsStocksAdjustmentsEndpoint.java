@@ -0,0 +1,69 @@
+package org.dbuniproject.api.endpoints;
+
+import io.javalin.http.Context;
+import io.javalin.http.HttpStatus;
+import org.dbuniproject.api.SessionTokenManager;
+import org.dbuniproject.api.db.DatabaseConnection;
+import org.dbuniproject.api.db.structures.ProductStock;
+import org.dbuniproject.api.db.structures.StockAdjustment;
+import org.dbuniproject.api.db.structures.StockAdjustmentResult;
+import org.dbuniproject.api.db.structures.ValidationException;
+import org.json.JSONObject;
+
+import java.sql.SQLException;
+
+public class ProductsStocksAdjustmentsEndpoint extends Endpoint implements Endpoint.PostMethod {
+    public ProductsStocksAdjustmentsEndpoint() {
+        super("/products/stocks/adjustments");
+    }
+
+    @Override
+    public void post(Context ctx) throws EndpointException {
+        final SessionTokenManager.Token sessionToken = getSessionToken(ctx);
+        if (sessionToken == null || !sessionToken.isManager()) {
+            throw new EndpointException(HttpStatus.UNAUTHORIZED, "Not a manager.");
+        }
+
+        final StockAdjustment adjustment = new StockAdjustment(ctx.bodyAsClass(JSONObject.class));
+        try {
+            adjustment.validate();
+        } catch (ValidationException e) {
+            throw new EndpointException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+
+        try (final DatabaseConnection db = new DatabaseConnection()) {
+            final StockAdjustmentResult result = db.adjustProductStock(
+                    sessionToken.rut(),
+                    adjustment.sku(),
+                    null,
+                    null,
+                    null,
+                    null,
+                    adjustment.forSaleDelta(),
+                    adjustment.inStorageDelta()
+            );
+            if (result == null) {
+                throw new EndpointException(HttpStatus.NOT_FOUND, "Product does not exist.");
+            }
+
+            final ProductStock stock = result.stock();
+            if (!result.applied()) {
+                throw new EndpointException(
+                        HttpStatus.CONFLICT,
+                        "Adjustment would leave negative stock (for sale " + stock.forSale + ", in storage "
+                        + stock.inStorage + ")."
+                );
+            }
+
+            ctx.status(HttpStatus.OK).json(new JSONObject()
+                    .put("sku", stock.productSku)
+                    .put("min", stock.min)
+                    .put("max", stock.max)
+                    .put("forSale", stock.forSale)
+                    .put("inStorage", stock.inStorage)
+            );
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
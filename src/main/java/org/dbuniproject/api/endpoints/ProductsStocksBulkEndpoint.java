@@ -0,0 +1,127 @@
+package org.dbuniproject.api.endpoints;
+
+import io.javalin.http.Context;
+import io.javalin.http.HttpStatus;
+import org.dbuniproject.api.SessionTokenManager;
+import org.dbuniproject.api.db.DatabaseConnection;
+import org.dbuniproject.api.db.structures.ProductStock;
+import org.dbuniproject.api.db.structures.StockUpdate;
+import org.dbuniproject.api.db.structures.ValidationException;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+
+public class ProductsStocksBulkEndpoint extends Endpoint implements Endpoint.PatchMethod {
+    private static final int MAX_ITEMS = 1000;
+
+    public ProductsStocksBulkEndpoint() {
+        super("/products/stocks/bulk");
+    }
+
+    @Override
+    public void patch(Context ctx) throws EndpointException {
+        final SessionTokenManager.Token sessionToken = getSessionToken(ctx);
+        if (sessionToken == null || !sessionToken.isManager()) {
+            throw new EndpointException(HttpStatus.UNAUTHORIZED, "Not a manager.");
+        }
+
+        final JSONArray items = ctx.bodyAsClass(JSONObject.class).optJSONArray("items");
+        if (items == null || items.isEmpty()) {
+            throw new EndpointException(HttpStatus.BAD_REQUEST, "Expected non-empty items array in request body.");
+        }
+
+        if (items.length() > MAX_ITEMS) {
+            throw new EndpointException(HttpStatus.BAD_REQUEST, "At most " + MAX_ITEMS + " items per request.");
+        }
+
+        final JSONObject[] results = new JSONObject[items.length()];
+        final ArrayList<Integer> pending = new ArrayList<>();
+        final StockUpdate[] updates = new StockUpdate[items.length()];
+        final HashSet<Long> seenSkus = new HashSet<>();
+
+        for (int i = 0; i < items.length(); i++) {
+            final JSONObject item = items.optJSONObject(i);
+            if (item == null) {
+                results[i] = rejected(i, -1, "Item must be an object.");
+                continue;
+            }
+
+            final StockUpdate update = new StockUpdate(item);
+            try {
+                update.validate("items[" + i + "]");
+            } catch (ValidationException e) {
+                results[i] = rejected(i, update.sku(), e.getMessage());
+                continue;
+            }
+
+            if (!seenSkus.add(update.sku())) {
+                results[i] = rejected(i, update.sku(), "Product " + update.sku() + " appears more than once.");
+                continue;
+            }
+
+            updates[i] = update;
+            pending.add(i);
+        }
+
+        try (final DatabaseConnection db = new DatabaseConnection()) {
+            final Integer storeId = db.getManagerStoreId(sessionToken.rut());
+            if (storeId == null) {
+                throw new RuntimeException("Could not resolve store id from manager " + sessionToken.rut() + ".");
+            }
+
+            db.beginTransaction();
+
+            final HashMap<Long, ProductStock> stocks = db.getProductStocksForUpdate(
+                    pending.stream().map(i -> updates[i].sku()).toList(),
+                    storeId
+            );
+            final ArrayList<ProductStock> changed = new ArrayList<>();
+
+            for (final int i : pending) {
+                final StockUpdate update = updates[i];
+                final ProductStock stock = stocks.get(update.sku());
+                if (stock == null) {
+                    results[i] = rejected(i, update.sku(), "Product does not exist.");
+                    continue;
+                }
+
+                update.applyTo(stock);
+                try {
+                    stock.validate("items[" + i + "]");
+                } catch (ValidationException e) {
+                    results[i] = rejected(i, update.sku(), e.getMessage());
+                    continue;
+                }
+
+                changed.add(stock);
+                results[i] = new JSONObject()
+                        .put("index", i)
+                        .put("sku", update.sku())
+                        .put("status", "updated");
+            }
+
+            db.updateProductStocks(changed, storeId);
+            db.commit();
+
+            ctx.status(HttpStatus.OK).json(new JSONObject()
+                    .put("updated", changed.size())
+                    .put("rejected", items.length() - changed.size())
+                    .put("results", new JSONArray(results))
+            );
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static JSONObject rejected(int index, long sku, String message) {
+        return new JSONObject()
+                .put("index", index)
+                .put("sku", sku)
+                .put("status", "rejected")
+                .put("message", message);
+    }
+}
@@ -6,6 +6,7 @@ import org.dbuniproject.api.SessionTokenManager;
 import org.dbuniproject.api.Util;
 import org.dbuniproject.api.db.DatabaseConnection;
 import org.dbuniproject.api.db.structures.ProductStock;
+import org.dbuniproject.api.db.structures.StockAdjustmentResult;
 import org.json.JSONObject;
 
 import java.sql.SQLException;
@@ -56,29 +57,45 @@ public class ProductsStocksEndpoint extends Endpoint implements Endpoint.GetMeth
         }
 
         try (final DatabaseConnection db = new DatabaseConnection()) {
-            final ProductStock stock = db.getProductStock(sku, sessionToken.rut());
-            if (stock == null) {
+            final StockAdjustmentResult result = db.adjustProductStock(
+                    sessionToken.rut(),
+                    sku,
+                    min != -1 ? min : null,
+                    max != -1 ? max : null,
+                    forSale != -1 ? forSale : null,
+                    inStorage != -1 ? inStorage : null,
+                    0,
+                    0
+            );
+            if (result == null) {
                 throw new EndpointException(HttpStatus.NOT_FOUND, "Product does not exist.");
             }
 
-            if (min != -1) stock.min = min;
-            if (max != -1) stock.max = max;
-            if (forSale != -1) stock.forSale = forSale;
-            if (inStorage != -1) stock.inStorage = inStorage;
-
-            if (stock.max <= stock.min) {
-                throw new EndpointException(HttpStatus.BAD_REQUEST, "Max must be greater than min.");
-            }
-
-            if (stock.forSale < 0) {
-                throw new EndpointException(HttpStatus.BAD_REQUEST, "Stock for sale must be greater than zero.");
-            }
-
-            if (stock.inStorage < 0) {
-                throw new EndpointException(HttpStatus.BAD_REQUEST, "Stock in storage must be greater than zero.");
+            if (!result.applied()) {
+                final ProductStock stock = result.stock();
+                if (min != -1) stock.min = min;
+                if (max != -1) stock.max = max;
+                if (forSale != -1) stock.forSale = forSale;
+                if (inStorage != -1) stock.inStorage = inStorage;
+
+                if (stock.max <= stock.min) {
+                    throw new EndpointException(HttpStatus.BAD_REQUEST, "Max must be greater than min.");
+                }
+
+                if (stock.forSale < 0) {
+                    throw new EndpointException(HttpStatus.BAD_REQUEST, "Stock for sale must be greater than zero.");
+                }
+
+                if (stock.inStorage < 0) {
+                    throw new EndpointException(
+                            HttpStatus.BAD_REQUEST,
+                            "Stock in storage must be greater than zero."
+                    );
+                }
+
+                throw new EndpointException(HttpStatus.CONFLICT, "Stock was modified concurrently, try again.");
             }
 
-            db.updateProductStock(stock);
             ctx.status(HttpStatus.OK);
         } catch (SQLException e) {
             throw new RuntimeException(e);
@@ -1,10 +1,7 @@
 package org.dbuniproject.api.endpoints;
 
 import io.javalin.http.Context;
-import io.javalin.http.HttpStatus;
-import org.dbuniproject.api.db.DatabaseConnection;
-
-import java.sql.SQLException;
+import org.dbuniproject.api.db.ReferenceDataCache;
 
 public class RegionsEndpoint extends Endpoint implements Endpoint.GetMethod {
     public RegionsEndpoint() {
@@ -13,10 +10,6 @@ public class RegionsEndpoint extends Endpoint implements Endpoint.GetMethod {
 
     @Override
     public void get(Context ctx) {
-        try (final DatabaseConnection db = new DatabaseConnection()) {
-            ctx.status(HttpStatus.OK).json(db.getRegionsWithCommunes());
-        } catch (SQLException e) {
-            throw new RuntimeException(e);
-        }
+        respondWithCache(ctx, ReferenceDataCache.REGIONS);
     }
 }
@@ -0,0 +1,90 @@
+package org.dbuniproject.api.endpoints;
+
+import io.javalin.http.Context;
+import io.javalin.http.HttpStatus;
+import jakarta.annotation.Nullable;
+import org.dbuniproject.api.SessionTokenManager;
+import org.dbuniproject.api.Util;
+import org.dbuniproject.api.db.DatabaseConnection;
+import org.dbuniproject.api.db.structures.SalesAnalyticsQuery;
+
+import java.sql.Date;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+
+public class SalesAnalyticsEndpoint extends Endpoint implements Endpoint.GetMethod {
+    private static final int DEFAULT_RANGE_DAYS = 30;
+    private static final int MAX_RANGE_DAYS = 5 * 366;
+
+    public SalesAnalyticsEndpoint() {
+        super("/sales/analytics");
+    }
+
+    @Override
+    public void get(Context ctx) throws EndpointException {
+        final SessionTokenManager.Token sessionToken = getSessionToken(ctx);
+        if (sessionToken == null || !sessionToken.isManager()) {
+            throw new EndpointException(HttpStatus.UNAUTHORIZED, "Not a manager.");
+        }
+
+        final String periodParam = ctx.queryParam("period");
+        final SalesAnalyticsQuery.Period period = periodParam == null
+                ? SalesAnalyticsQuery.Period.DAY
+                : Util.stringToEnum(periodParam, SalesAnalyticsQuery.Period.class);
+        if (period == null) {
+            throw new EndpointException(HttpStatus.BAD_REQUEST, "Period must be one of day, week or month.");
+        }
+
+        final String groupByParam = ctx.queryParam("groupBy");
+        final SalesAnalyticsQuery.GroupBy groupBy = groupByParam == null
+                ? SalesAnalyticsQuery.GroupBy.STORE
+                : Util.stringToEnum(groupByParam, SalesAnalyticsQuery.GroupBy.class);
+        if (groupBy == null) {
+            throw new EndpointException(HttpStatus.BAD_REQUEST, "Group by must be one of store, cashier or product.");
+        }
+
+        // Both ends are whole days and the range includes the to date
+        final LocalDate toParam = getDateQueryParam(ctx, "to");
+        final LocalDate to = (toParam != null ? toParam : LocalDate.now()).plusDays(1);
+        final LocalDate fromParam = getDateQueryParam(ctx, "from");
+        final LocalDate from = fromParam != null ? fromParam : to.minusDays(DEFAULT_RANGE_DAYS);
+
+        if (!from.isBefore(to)) {
+            throw new EndpointException(HttpStatus.BAD_REQUEST, "From date must not be after to date.");
+        }
+        if (ChronoUnit.DAYS.between(from, to) > MAX_RANGE_DAYS) {
+            throw new EndpointException(HttpStatus.BAD_REQUEST, "Date range cannot span more than 5 years.");
+        }
+
+        try (final DatabaseConnection db = new DatabaseConnection()) {
+            final Integer storeId = db.getManagerStoreId(sessionToken.rut());
+            if (storeId == null) {
+                throw new RuntimeException("Could not resolve store id from manager " + sessionToken.rut() + ".");
+            }
+
+            ctx.status(HttpStatus.OK).json(db.getSalesAnalytics(new SalesAnalyticsQuery(
+                    storeId,
+                    period,
+                    groupBy,
+                    Date.valueOf(from),
+                    Date.valueOf(to)
+            )));
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Nullable
+    private static LocalDate getDateQueryParam(Context ctx, String key) throws EndpointException {
+        final String value = ctx.queryParam(key);
+        if (value == null || value.isEmpty()) return null;
+
+        try {
+            return LocalDate.parse(value);
+        } catch (DateTimeParseException e) {
+            throw new EndpointException(HttpStatus.BAD_REQUEST, "Invalid " + key + " date: " + value);
+        }
+    }
+}
@@ -0,0 +1,225 @@
+package org.dbuniproject.api.endpoints;
+
+import io.javalin.http.Context;
+import io.javalin.http.HttpStatus;
+import org.dbuniproject.api.SessionTokenManager;
+import org.dbuniproject.api.db.DatabaseConnection;
+import org.dbuniproject.api.db.structures.ProductSale;
+import org.dbuniproject.api.db.structures.ProductSaleAvailability;
+import org.dbuniproject.api.db.structures.Sale;
+import org.dbuniproject.api.db.structures.ValidationException;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+
+public class SalesBatchEndpoint extends Endpoint implements Endpoint.PostMethod {
+    private static final int MAX_SALES = 1000;
+    private static final int MAX_KEY_LENGTH = 100;
+    // Sales created per transaction, a failing chunk is retried one sale at a time
+    private static final int CHUNK_SIZE = 100;
+
+    public SalesBatchEndpoint() {
+        super("/sales/batch");
+    }
+
+    @Override
+    public void post(Context ctx) throws EndpointException {
+        final SessionTokenManager.Token sessionToken = getSessionToken(ctx);
+        if (sessionToken == null || !sessionToken.isCashier()) {
+            throw new EndpointException(HttpStatus.UNAUTHORIZED, "Not a cashier.");
+        }
+
+        final String cashierRut = sessionToken.rut();
+        final JSONArray items = ctx.bodyAsClass(JSONObject.class).optJSONArray("sales");
+        if (items == null || items.isEmpty()) {
+            throw new EndpointException(HttpStatus.BAD_REQUEST, "Expected non-empty sales array in request body.");
+        }
+
+        if (items.length() > MAX_SALES) {
+            throw new EndpointException(HttpStatus.BAD_REQUEST, "At most " + MAX_SALES + " sales per request.");
+        }
+
+        final JSONArray accepted = new JSONArray();
+        final JSONArray rejected = new JSONArray();
+        final JSONArray duplicates = new JSONArray();
+
+        final ArrayList<String> keys = new ArrayList<>();
+        final ArrayList<Sale> sales = new ArrayList<>();
+        final HashSet<String> seenKeys = new HashSet<>();
+
+        for (int i = 0; i < items.length(); i++) {
+            final JSONObject item = items.optJSONObject(i);
+            final String key = item != null ? item.optString("key").strip() : "";
+
+            if (key.isEmpty() || key.length() > MAX_KEY_LENGTH) {
+                rejected.put(result(key, "Expected key of 1 to " + MAX_KEY_LENGTH + " characters."));
+                continue;
+            }
+
+            if (!seenKeys.add(key)) {
+                duplicates.put(result(key, "Key appears more than once in this batch."));
+                continue;
+            }
+
+            final Sale sale;
+            try {
+                sale = new Sale(item, cashierRut);
+                sale.validateFields();
+            } catch (JSONException | ValidationException e) {
+                rejected.put(result(key, e.getMessage()));
+                continue;
+            }
+
+            keys.add(key);
+            sales.add(sale);
+        }
+
+        try (final DatabaseConnection db = new DatabaseConnection()) {
+            if (!keys.isEmpty()) {
+                this.validateAndIngest(db, cashierRut, keys, sales, accepted, rejected, duplicates);
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+
+        ctx.status(HttpStatus.OK).json(new JSONObject()
+                .put("accepted", accepted)
+                .put("rejected", rejected)
+                .put("duplicates", duplicates)
+        );
+    }
+
+    private void validateAndIngest(
+            DatabaseConnection db,
+            String cashierRut,
+            List<String> keys,
+            List<Sale> sales,
+            JSONArray accepted,
+            JSONArray rejected,
+            JSONArray duplicates
+    ) throws SQLException {
+        final HashMap<String, Long> ingested = db.getIngestedSales(cashierRut, keys);
+        final HashSet<String> clients = db.getExistingClients(
+                sales.stream().map(Sale::clientRut).distinct().toList()
+        );
+
+        final ArrayList<ProductSale> lines = new ArrayList<>();
+        for (final Sale sale : sales) {
+            lines.addAll(sale.products());
+        }
+        final ArrayList<ProductSaleAvailability> availability = db.getProductSaleAvailability(cashierRut, lines);
+
+        // Stock is checked in request order, so earlier sales in the batch use up units before later ones
+        final HashMap<Long, Integer> reserved = new HashMap<>();
+        final ArrayList<String> validKeys = new ArrayList<>();
+        final ArrayList<Sale> validSales = new ArrayList<>();
+        int lineOffset = 0;
+
+        for (int i = 0; i < sales.size(); i++) {
+            final String key = keys.get(i);
+            final Sale sale = sales.get(i);
+            final List<ProductSaleAvailability> saleAvailability = availability.subList(
+                    lineOffset,
+                    lineOffset + sale.products().size()
+            );
+            lineOffset += sale.products().size();
+
+            final Long existingId = ingested.get(key);
+            if (existingId != null) {
+                duplicates.put(result(key, existingId));
+                continue;
+            }
+
+            if (!clients.contains(sale.clientRut())) {
+                rejected.put(result(key, new ValidationException("clientRut", "Client does not exist.").getMessage()));
+                continue;
+            }
+
+            try {
+                sale.validateAvailability(saleAvailability, reserved);
+            } catch (ValidationException e) {
+                rejected.put(result(key, e.getMessage()));
+                continue;
+            }
+
+            validKeys.add(key);
+            validSales.add(sale);
+        }
+
+        for (int start = 0; start < validKeys.size(); start += CHUNK_SIZE) {
+            final int end = Math.min(start + CHUNK_SIZE, validKeys.size());
+            final List<String> chunkKeys = validKeys.subList(start, end);
+            final List<Sale> chunkSales = validSales.subList(start, end);
+
+            try {
+                db.beginTransaction();
+                final HashMap<String, Long> created = db.ingestSales(cashierRut, chunkKeys, chunkSales);
+                db.commit();
+
+                for (final String key : chunkKeys) {
+                    final Long id = created.get(key);
+                    if (id != null) {
+                        accepted.put(result(key, id));
+                    } else {
+                        duplicates.put(result(key, "Key was ingested concurrently."));
+                    }
+                }
+            } catch (SQLException e) {
+                db.rollback();
+
+                for (int i = 0; i < chunkKeys.size(); i++) {
+                    this.ingestOne(db, cashierRut, chunkKeys.get(i), chunkSales.get(i), accepted, rejected, duplicates);
+                }
+            }
+        }
+    }
+
+    private void ingestOne(
+            DatabaseConnection db,
+            String cashierRut,
+            String key,
+            Sale sale,
+            JSONArray accepted,
+            JSONArray rejected,
+            JSONArray duplicates
+    ) throws SQLException {
+        try {
+            db.beginTransaction();
+            final Long id = db.ingestSales(cashierRut, List.of(key), List.of(sale)).get(key);
+            db.commit();
+
+            if (id != null) {
+                accepted.put(result(key, id));
+            } else {
+                duplicates.put(result(key, "Key was ingested concurrently."));
+            }
+        } catch (SQLException e) {
+            db.rollback();
+
+            final Long existingId = db.getIngestedSales(cashierRut, List.of(key)).get(key);
+            if (existingId != null) {
+                duplicates.put(result(key, existingId));
+            } else {
+                rejected.put(result(key, e.getMessage()));
+            }
+        }
+    }
+
+    private static JSONObject result(String key, long saleId) {
+        return new JSONObject()
+                .put("key", key)
+                .put("id", saleId);
+    }
+
+    private static JSONObject result(String key, String message) {
+        return new JSONObject()
+                .put("key", key)
+                .put("message", message);
+    }
+}
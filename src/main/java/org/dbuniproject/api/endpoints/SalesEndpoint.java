@@ -2,16 +2,27 @@ package org.dbuniproject.api.endpoints;
 
 import io.javalin.http.Context;
 import io.javalin.http.HttpStatus;
+import jakarta.annotation.Nullable;
 import org.dbuniproject.api.SessionTokenManager;
 import org.dbuniproject.api.Util;
 import org.dbuniproject.api.db.DatabaseConnection;
 import org.dbuniproject.api.db.structures.Sale;
+import org.dbuniproject.api.db.structures.SaleCursor;
 import org.dbuniproject.api.db.structures.ValidationException;
 import org.json.JSONObject;
 
 import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.stream.Stream;
 
 public class SalesEndpoint extends Endpoint implements Endpoint.GetMethod, Endpoint.PostMethod {
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    private static final int MAX_PAGE_SIZE = 1000;
+
     public SalesEndpoint() {
         super("/sales");
     }
@@ -38,11 +49,43 @@ public class SalesEndpoint extends Endpoint implements Endpoint.GetMethod, Endpo
             }
         }
 
+        final Timestamp from = getDateQueryParam(ctx, "from", false);
+        final Timestamp to = getDateQueryParam(ctx, "to", true);
+
+        final String cursorParam = ctx.queryParam("cursor");
+        final SaleCursor cursor = cursorParam != null ? SaleCursor.decode(cursorParam) : null;
+        if (cursorParam != null && cursor == null) {
+            throw new EndpointException(HttpStatus.BAD_REQUEST, "Invalid cursor.");
+        }
+
+        final String limitParam = ctx.queryParam("limit");
+        final Integer limit = Util.getQueryParam(ctx, "limit", Integer.class);
+        if (limitParam != null && (limit == null || limit <= 0)) {
+            throw new EndpointException(HttpStatus.BAD_REQUEST, "Limit must be a positive integer.");
+        }
+
+        final String cashierRut = sessionToken.isCashier() ? sessionToken.rut() : null;
+        final String managerRut = sessionToken.isCashier() ? null : sessionToken.rut();
+
         try (final DatabaseConnection db = new DatabaseConnection()) {
-            ctx.status(HttpStatus.OK).json(sessionToken.isCashier()
-                    ? db.getSalesOfCashier(sessionToken.rut())
-                    : db.getSalesInStore(sessionToken.rut())
-            );
+            // Without paging parameters the whole listing is streamed straight from the result set
+            if (limit == null && cursor == null) {
+                ctx.status(HttpStatus.OK).writeJsonStream(db.getSales(cashierRut, managerRut, from, to, null, 0));
+                return;
+            }
+
+            final int pageSize = Math.min(limit != null ? limit : DEFAULT_PAGE_SIZE, MAX_PAGE_SIZE);
+            final List<Sale> page;
+            // One extra row tells whether there is a next page without a separate count
+            try (final Stream<Sale> sales = db.getSales(cashierRut, managerRut, from, to, cursor, pageSize + 1)) {
+                page = sales.toList();
+            }
+
+            if (page.size() > pageSize) {
+                ctx.header(NEXT_CURSOR_HEADER, SaleCursor.after(page.get(pageSize - 1)).encode());
+            }
+
+            ctx.status(HttpStatus.OK).writeJsonStream(page.stream().limit(pageSize));
         } catch (SQLException e) {
             throw new RuntimeException(e);
         }
@@ -56,16 +99,21 @@ public class SalesEndpoint extends Endpoint implements Endpoint.GetMethod, Endpo
         }
 
         final JSONObject body = ctx.bodyAsClass(JSONObject.class);
-        final Sale sale;
-
-        try {
-            sale = new Sale(body, sessionToken.rut());
-        } catch (ValidationException e) {
-            throw new EndpointException(HttpStatus.BAD_REQUEST, e.getMessage());
-        }
 
         try (final DatabaseConnection db = new DatabaseConnection()) {
+            final Sale sale;
+
+            try {
+                sale = new Sale(body, sessionToken.rut(), db);
+            } catch (ValidationException e) {
+                throw new EndpointException(HttpStatus.BAD_REQUEST, e.getMessage());
+            }
+
+            // The sale and its rollups commit together
+            db.beginTransaction();
             final long newSaleId = db.insertSale(sale);
+            db.commit();
+
             ctx.status(HttpStatus.CREATED).json(new JSONObject()
                     .put("id", newSaleId)
             );
@@ -73,4 +121,23 @@ public class SalesEndpoint extends Endpoint implements Endpoint.GetMethod, Endpo
             throw new RuntimeException(e);
         }
     }
+
+    // Accepts a date or a local date-time, a date-only upper bound covers that whole day
+    @Nullable
+    private static Timestamp getDateQueryParam(Context ctx, String key, boolean exclusiveEnd) throws EndpointException {
+        final String value = ctx.queryParam(key);
+        if (value == null || value.isEmpty()) return null;
+
+        try {
+            final LocalDate date = LocalDate.parse(value);
+            return Timestamp.valueOf((exclusiveEnd ? date.plusDays(1) : date).atStartOfDay());
+        } catch (DateTimeParseException ignored) {
+        }
+
+        try {
+            return Timestamp.valueOf(LocalDateTime.parse(value));
+        } catch (DateTimeParseException e) {
+            throw new EndpointException(HttpStatus.BAD_REQUEST, "Invalid " + key + " date: " + value);
+        }
+    }
 }
@@ -3,7 +3,7 @@ package org.dbuniproject.api.endpoints;
 import io.javalin.http.Context;
 import io.javalin.http.HttpStatus;
 import org.dbuniproject.api.SessionTokenManager;
-import org.dbuniproject.api.db.DatabaseConnection;
+import org.dbuniproject.api.db.ReferenceDataCache;
 import org.json.JSONObject;
 
 import java.sql.SQLException;
@@ -20,9 +20,9 @@ public class SalesTaxEndpoint extends Endpoint implements Endpoint.GetMethod {
             throw new EndpointException(HttpStatus.UNAUTHORIZED, "Not an employee.");
         }
 
-        try (final DatabaseConnection db = new DatabaseConnection()) {
+        try {
             ctx.status(HttpStatus.OK).json(new JSONObject()
-                    .put("tax", db.getSalesTax())
+                    .put("tax", ReferenceDataCache.PARAMETERS.get().value().tax())
             );
         } catch (SQLException e) {
             throw new RuntimeException(e);
@@ -8,10 +8,22 @@ import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
 import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
 import java.util.Collection;
+import java.util.Iterator;
+import java.util.stream.Stream;
 
 public class JSONMapper implements JsonMapper {
+    private static final int STREAM_BUFFER_SIZE = 8192;
+
     @Nonnull
     @Override
     public String toJsonString(@Nonnull Object object, @Nonnull Type type) {
@@ -24,13 +36,13 @@ public class JSONMapper implements JsonMapper {
         }
 
         if (object instanceof Collection<?> collection) {
-            return new JSONArray(collection.stream().map(element -> {
-                if (element instanceof JSONEncodable encodable) {
-                    return encodable.toJSON();
-                }
-
-                return element;
-            }).toList()).toString();
+            final StringWriter writer = new StringWriter();
+            try {
+                writeArray(collection.iterator(), writer);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return writer.toString();
         }
 
         if (object instanceof JSONEncodable encodable) {
@@ -40,6 +52,21 @@ public class JSONMapper implements JsonMapper {
         return object.toString();
     }
 
+    // Backs Context.writeJsonStream, each element is encoded and written out before the next one is pulled
+    @Override
+    public void writeToOutputStream(@Nonnull Stream<?> stream, @Nonnull OutputStream outputStream) {
+        try (stream) {
+            final Writer writer = new BufferedWriter(
+                    new OutputStreamWriter(outputStream, StandardCharsets.UTF_8),
+                    STREAM_BUFFER_SIZE
+            );
+            writeArray(stream.iterator(), writer);
+            writer.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
     @SuppressWarnings("unchecked")
     @Nonnull
     @Override
@@ -52,4 +79,32 @@ public class JSONMapper implements JsonMapper {
             );
         }
     }
+
+    private static void writeArray(@Nonnull Iterator<?> iterator, @Nonnull Writer writer) throws IOException {
+        writer.write('[');
+
+        boolean first = true;
+        while (iterator.hasNext()) {
+            if (!first) {
+                writer.write(',');
+            }
+            first = false;
+
+            writeValue(iterator.next(), writer);
+        }
+
+        writer.write(']');
+    }
+
+    private static void writeValue(Object value, @Nonnull Writer writer) throws IOException {
+        final Object json = value instanceof JSONEncodable encodable ? encodable.toJSON() : JSONObject.wrap(value);
+
+        if (json instanceof JSONObject object) {
+            object.write(writer);
+        } else if (json instanceof JSONArray array) {
+            array.write(writer);
+        } else {
+            writer.write(JSONObject.valueToString(json));
+        }
+    }
 }
@@ -0,0 +1,70 @@
+package org.dbuniproject.api.logging;
+
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Bounded multi-producer, single-consumer ring buffer. Producers never block, a full buffer rejects the entry.
+class LogRingBuffer {
+    private final int capacity;
+    private final int mask;
+    private final Object[] entries;
+    // Each slot's sequence tells whether it is free for position p (== p) or holds the entry for p (== p + 1)
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong();
+    private long head = 0;
+
+    LogRingBuffer(int capacity) {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of two, got " + capacity + ".");
+        }
+
+        this.capacity = capacity;
+        this.mask = capacity - 1;
+        this.entries = new Object[capacity];
+        this.sequences = new AtomicLongArray(capacity);
+
+        for (int i = 0; i < capacity; i++) {
+            this.sequences.set(i, i);
+        }
+    }
+
+    boolean offer(@Nonnull Object entry) {
+        long position = this.tail.get();
+
+        while (true) {
+            final int index = (int) (position & this.mask);
+            final long difference = this.sequences.get(index) - position;
+
+            if (difference == 0) {
+                if (this.tail.compareAndSet(position, position + 1)) {
+                    this.entries[index] = entry;
+                    // The volatile sequence write publishes the plain array write above to the consumer
+                    this.sequences.set(index, position + 1);
+                    return true;
+                }
+                position = this.tail.get();
+            } else if (difference < 0) {
+                return false;
+            } else {
+                position = this.tail.get();
+            }
+        }
+    }
+
+    // Must only be called from the single consumer thread
+    @Nullable
+    Object poll() {
+        final int index = (int) (this.head & this.mask);
+        if (this.sequences.get(index) != this.head + 1) return null;
+
+        final Object entry = this.entries[index];
+        this.entries[index] = null;
+        this.sequences.set(index, this.head + this.capacity);
+        this.head++;
+
+        return entry;
+    }
+}
@@ -0,0 +1,9 @@
+package org.dbuniproject.api.logging;
+
+import jakarta.annotation.Nonnull;
+
+import java.io.IOException;
+
+public interface LogSink {
+    void write(@Nonnull String batch) throws IOException;
+}
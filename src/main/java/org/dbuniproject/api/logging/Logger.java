@@ -0,0 +1,172 @@
+package org.dbuniproject.api.logging;
+
+import jakarta.annotation.Nonnull;
+import org.dbuniproject.api.Api;
+import org.dbuniproject.api.Util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+public class Logger {
+    private static final Level LEVEL = Level.fromString(Api.DOTENV.get("LOG_LEVEL", "debug"));
+    private static final int SAMPLE_RATE = Math.max(1, Util.getIntSetting("LOG_SAMPLE_RATE", 1));
+    private static final int BUFFER_SIZE = Util.getIntSetting("LOG_BUFFER_SIZE", 8192);
+    private static final int MAX_BATCH_SIZE = 512;
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
+    private static final DateTimeFormatter TIMESTAMP_FORMATTER = DateTimeFormatter
+            .ofPattern("yyyy-MM-dd HH:mm:ss")
+            .withZone(ZoneId.systemDefault());
+
+    private static final LogRingBuffer BUFFER = new LogRingBuffer(BUFFER_SIZE);
+    private static final AtomicLong DROPPED = new AtomicLong();
+    private static final LogSink SINK = createSink();
+
+    static {
+        if (LEVEL != Level.OFF) {
+            final Thread writer = new Thread(Logger::runWriter, "log-writer");
+            writer.setDaemon(true);
+            writer.start();
+
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                //noinspection StatementWithEmptyBody
+                while (drain() > 0) ;
+            }, "log-writer-shutdown"));
+        }
+    }
+
+    public static boolean isEnabled(@Nonnull Level level) {
+        return level.ordinal() <= LEVEL.ordinal();
+    }
+
+    // Guard message construction with this so disabled or sampled-out logs cost a single branch
+    public static boolean shouldLog(@Nonnull Level level) {
+        if (!isEnabled(level)) return false;
+        if (SAMPLE_RATE == 1 || level.ordinal() <= Level.WARN.ordinal()) return true;
+        return ThreadLocalRandom.current().nextInt(SAMPLE_RATE) == 0;
+    }
+
+    public static void log(@Nonnull Level level, @Nonnull String message) {
+        if (!isEnabled(level)) return;
+
+        if (!BUFFER.offer(new Entry(System.currentTimeMillis(), message))) {
+            DROPPED.incrementAndGet();
+        }
+    }
+
+    public static void warn(@Nonnull String message) {
+        log(Level.WARN, message);
+    }
+
+    public static void warn(@Nonnull String message, @Nonnull Throwable throwable) {
+        if (!isEnabled(Level.WARN)) return;
+
+        final StringWriter stackTrace = new StringWriter();
+        throwable.printStackTrace(new PrintWriter(stackTrace));
+        log(Level.WARN, message + "\n" + stackTrace.toString().stripTrailing());
+    }
+
+    private static LogSink createSink() {
+        final String sink = Api.DOTENV.get("LOG_SINK", "stdout");
+
+        return switch (sink) {
+            case "stdout" -> new StdoutLogSink();
+            case "file" -> {
+                try {
+                    yield new RollingFileLogSink(
+                            new File(Api.DOTENV.get("LOG_FILE", "logs/api.log")),
+                            Util.getLongSetting("LOG_FILE_MAX_BYTES", 10 * 1024 * 1024),
+                            Util.getIntSetting("LOG_FILE_MAX_FILES", 5)
+                    );
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+            default -> throw new RuntimeException("Unknown LOG_SINK " + sink + ".");
+        };
+    }
+
+    private static void runWriter() {
+        //noinspection InfiniteLoopStatement
+        while (true) {
+            if (drain() == 0) {
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            }
+        }
+    }
+
+    private static synchronized int drain() {
+        final StringBuilder batch = new StringBuilder();
+        long lastSecond = -1;
+        String timestamp = "";
+        int count = 0;
+
+        final long dropped = DROPPED.getAndSet(0);
+        if (dropped > 0) {
+            batch.append("[log] Dropped ").append(dropped).append(" entries, buffer was full.\n");
+        }
+
+        Object polled;
+        while (count < MAX_BATCH_SIZE && (polled = BUFFER.poll()) != null) {
+            final Entry entry = (Entry) polled;
+            final long second = entry.timestamp / 1000;
+
+            if (second != lastSecond) {
+                lastSecond = second;
+                timestamp = TIMESTAMP_FORMATTER.format(Instant.ofEpochMilli(entry.timestamp));
+            }
+
+            batch.append('[').append(timestamp).append("] ").append(entry.message).append('\n');
+            count++;
+        }
+
+        if (batch.isEmpty()) return 0;
+
+        try {
+            SINK.write(batch.toString());
+        } catch (IOException e) {
+            //noinspection CallToPrintStackTrace
+            e.printStackTrace();
+        }
+
+        return Math.max(count, 1);
+    }
+
+    private record Entry(long timestamp, @Nonnull String message) {
+    }
+
+    public enum Level {
+        OFF("off"),
+        WARN("warn"),
+        INFO("info"),
+        DEBUG("debug");
+
+        private final String name;
+
+        Level(String name) {
+            this.name = name;
+        }
+
+        @Nonnull
+        private static Level fromString(@Nonnull String value) {
+            final Level level = Util.stringToEnum(value.toLowerCase(), Level.class);
+            if (level == null) {
+                throw new RuntimeException("Unknown LOG_LEVEL " + value + ".");
+            }
+            return level;
+        }
+
+        @Override
+        public String toString() {
+            return this.name;
+        }
+    }
+}
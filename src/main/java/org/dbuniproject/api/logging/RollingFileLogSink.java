@@ -0,0 +1,73 @@
+package org.dbuniproject.api.logging;
+
+import jakarta.annotation.Nonnull;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+public class RollingFileLogSink implements LogSink {
+    private final File file;
+    private final long maxBytes;
+    private final int maxFiles;
+    private FileOutputStream output;
+    private long size;
+
+    public RollingFileLogSink(@Nonnull File file, long maxBytes, int maxFiles) throws IOException {
+        this.file = file;
+        this.maxBytes = maxBytes;
+        this.maxFiles = maxFiles;
+
+        final File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null) {
+            //noinspection ResultOfMethodCallIgnored
+            parent.mkdirs();
+        }
+
+        this.open();
+    }
+
+    @Override
+    public void write(@Nonnull String batch) throws IOException {
+        final byte[] bytes = batch.getBytes(StandardCharsets.UTF_8);
+
+        if (this.size > 0 && this.size + bytes.length > this.maxBytes) {
+            this.roll();
+        }
+
+        this.output.write(bytes);
+        this.output.flush();
+        this.size += bytes.length;
+    }
+
+    private void open() throws IOException {
+        this.output = new FileOutputStream(this.file, true);
+        this.size = this.file.length();
+    }
+
+    private void roll() throws IOException {
+        this.output.close();
+
+        for (int i = this.maxFiles - 1; i >= 1; i--) {
+            final File source = this.rolledFile(i);
+            if (source.exists()) {
+                Files.move(source.toPath(), this.rolledFile(i + 1).toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+
+        if (this.maxFiles > 0) {
+            Files.move(this.file.toPath(), this.rolledFile(1).toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } else {
+            Files.delete(this.file.toPath());
+        }
+
+        this.open();
+    }
+
+    private File rolledFile(int index) {
+        return new File(this.file.getPath() + "." + index);
+    }
+}
@@ -0,0 +1,20 @@
+package org.dbuniproject.api.logging;
+
+import jakarta.annotation.Nonnull;
+
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+public class StdoutLogSink implements LogSink {
+    // Bypasses System.out so a whole batch costs a single unsynchronized write
+    private final OutputStream stdout = new FileOutputStream(FileDescriptor.out);
+
+    @Override
+    public void write(@Nonnull String batch) throws IOException {
+        this.stdout.write(batch.getBytes(StandardCharsets.UTF_8));
+        this.stdout.flush();
+    }
+}
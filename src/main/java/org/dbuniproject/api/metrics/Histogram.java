@@ -0,0 +1,51 @@
+package org.dbuniproject.api.metrics;
+
+import jakarta.annotation.Nonnull;
+
+import java.util.concurrent.atomic.LongAdder;
+
+// Power of two buckets from 100 µs to about 26 s, so recording is a shift and an uncontended add
+public class Histogram {
+    private static final long BASE_NANOS = 100_000;
+    private static final int BUCKETS = 19;
+
+    private final LongAdder[] counts = new LongAdder[BUCKETS + 1];
+    private final LongAdder sumNanos = new LongAdder();
+
+    public Histogram() {
+        for (int i = 0; i < this.counts.length; i++) {
+            this.counts[i] = new LongAdder();
+        }
+    }
+
+    public void record(long nanos) {
+        final long steps = Math.max(nanos - 1, 0) / BASE_NANOS;
+        final int bucket = steps == 0 ? 0 : 64 - Long.numberOfLeadingZeros(steps);
+        this.counts[Math.min(bucket, BUCKETS)].increment();
+        this.sumNanos.add(nanos);
+    }
+
+    // Writes the _bucket, _sum and _count series of the Prometheus histogram type, in seconds
+    public void write(@Nonnull StringBuilder out, @Nonnull String name, @Nonnull String labels) {
+        final String prefix = labels.isEmpty() ? "{" : "{" + labels + ",";
+        long cumulative = 0;
+
+        for (int i = 0; i < BUCKETS; i++) {
+            cumulative += this.counts[i].sum();
+            out.append(name).append("_bucket").append(prefix)
+                    .append("le=\"").append(upperBoundSeconds(i)).append("\"} ")
+                    .append(cumulative).append('\n');
+        }
+        cumulative += this.counts[BUCKETS].sum();
+
+        out.append(name).append("_bucket").append(prefix).append("le=\"+Inf\"} ").append(cumulative).append('\n');
+        out.append(name).append("_sum").append(labels.isEmpty() ? "" : "{" + labels + "}").append(' ')
+                .append(this.sumNanos.sum() / 1e9).append('\n');
+        out.append(name).append("_count").append(labels.isEmpty() ? "" : "{" + labels + "}").append(' ')
+                .append(cumulative).append('\n');
+    }
+
+    private static double upperBoundSeconds(int bucket) {
+        return (BASE_NANOS << bucket) / 1e9;
+    }
+}
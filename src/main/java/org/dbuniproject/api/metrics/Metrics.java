@@ -0,0 +1,116 @@
+package org.dbuniproject.api.metrics;
+
+import io.javalin.http.Handler;
+import io.javalin.http.HandlerType;
+import jakarta.annotation.Nonnull;
+import org.dbuniproject.api.SessionTokenManager;
+import org.dbuniproject.api.db.ConnectionPool;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+public class Metrics {
+    private static final ConcurrentHashMap<String, Route> ROUTES = new ConcurrentHashMap<>();
+    // Database time of the request running on this thread, -1 outside of an instrumented handler
+    private static final ThreadLocal<long[]> DATABASE_NANOS = ThreadLocal.withInitial(() -> new long[]{-1});
+
+    // Wraps an already error handled endpoint handler, so the status code it records is the final one
+    @Nonnull
+    public static Handler instrument(@Nonnull HandlerType method, @Nonnull String path, @Nonnull Handler handler) {
+        final Route route = ROUTES.computeIfAbsent(method + " " + path, k -> new Route(method.name(), path));
+
+        return ctx -> {
+            final long[] databaseNanos = DATABASE_NANOS.get();
+            databaseNanos[0] = 0;
+            route.inFlight.incrementAndGet();
+            final long start = System.nanoTime();
+
+            try {
+                handler.handle(ctx);
+            } finally {
+                route.duration.record(System.nanoTime() - start);
+                route.databaseTime.record(databaseNanos[0]);
+                route.inFlight.decrementAndGet();
+                route.statuses.computeIfAbsent(ctx.statusCode(), k -> new LongAdder()).increment();
+                databaseNanos[0] = -1;
+            }
+        };
+    }
+
+    public static void recordDatabaseTime(long nanos) {
+        final long[] databaseNanos = DATABASE_NANOS.get();
+        if (databaseNanos[0] >= 0) {
+            databaseNanos[0] += nanos;
+        }
+    }
+
+    // Prometheus text exposition format 0.0.4
+    @Nonnull
+    public static String scrape() {
+        final StringBuilder out = new StringBuilder(16_384);
+        final TreeMap<String, Route> routes = new TreeMap<>(ROUTES);
+
+        out.append("# HELP api_request_duration_seconds Time spent handling a request.\n");
+        out.append("# TYPE api_request_duration_seconds histogram\n");
+        for (final Route route : routes.values()) {
+            route.duration.write(out, "api_request_duration_seconds", route.labels);
+        }
+
+        out.append("# HELP api_request_database_seconds Time spent executing database queries per request.\n");
+        out.append("# TYPE api_request_database_seconds histogram\n");
+        for (final Route route : routes.values()) {
+            route.databaseTime.write(out, "api_request_database_seconds", route.labels);
+        }
+
+        out.append("# HELP api_responses_total Responses sent, by status code.\n");
+        out.append("# TYPE api_responses_total counter\n");
+        for (final Route route : routes.values()) {
+            for (final Map.Entry<Integer, LongAdder> status : new TreeMap<>(route.statuses).entrySet()) {
+                out.append("api_responses_total{").append(route.labels)
+                        .append(",status=\"").append(status.getKey()).append("\"} ")
+                        .append(status.getValue().sum()).append('\n');
+            }
+        }
+
+        out.append("# HELP api_requests_in_flight Requests currently being handled.\n");
+        out.append("# TYPE api_requests_in_flight gauge\n");
+        for (final Route route : routes.values()) {
+            out.append("api_requests_in_flight{").append(route.labels).append("} ")
+                    .append(route.inFlight.get()).append('\n');
+        }
+
+        out.append("# HELP api_db_pool_connections Database connections in the pool, by state.\n");
+        out.append("# TYPE api_db_pool_connections gauge\n");
+        out.append("api_db_pool_connections{state=\"borrowed\"} ")
+                .append(ConnectionPool.getBorrowedConnections()).append('\n');
+        out.append("api_db_pool_connections{state=\"idle\"} ").append(ConnectionPool.getIdleConnections()).append('\n');
+
+        out.append("# HELP api_sessions Live session tokens, by employee type.\n");
+        out.append("# TYPE api_sessions gauge\n");
+        for (final SessionTokenManager.Token.Type type : SessionTokenManager.Token.Type.values()) {
+            out.append("api_sessions{type=\"").append(type).append("\"} ")
+                    .append(SessionTokenManager.getLiveSessionCount(type)).append('\n');
+        }
+
+        out.append("# HELP api_sessions_expired_total Session tokens expired since startup.\n");
+        out.append("# TYPE api_sessions_expired_total counter\n");
+        out.append("api_sessions_expired_total ").append(SessionTokenManager.getExpiredSessionCount()).append('\n');
+
+        return out.toString();
+    }
+
+    private static class Route {
+        private final String labels;
+        private final Histogram duration = new Histogram();
+        private final Histogram databaseTime = new Histogram();
+        private final ConcurrentHashMap<Integer, LongAdder> statuses = new ConcurrentHashMap<>();
+        private final AtomicInteger inFlight = new AtomicInteger();
+
+        private Route(String method, String path) {
+            this.labels = "method=\"" + method + "\",path=\"" + path + "\"";
+        }
+    }
+}
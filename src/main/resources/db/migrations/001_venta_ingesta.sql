@@ -0,0 +1,8 @@
+-- Idempotency keys of sales ingested in batches by offline POS terminals, scoped to the cashier that sent them
+CREATE TABLE IF NOT EXISTS project.venta_ingesta (
+    rut_vendedor TEXT NOT NULL,
+    clave TEXT NOT NULL,
+    id_venta BIGINT NOT NULL,
+    fecha TIMESTAMP NOT NULL DEFAULT NOW(),
+    PRIMARY KEY (rut_vendedor, clave)
+);
@@ -0,0 +1,11 @@
+-- Responses to POST requests sent with an Idempotency-Key, only used when IDEMPOTENCY_PERSIST is enabled
+CREATE TABLE IF NOT EXISTS project.api_idempotencia (
+    clave TEXT PRIMARY KEY,
+    huella TEXT NOT NULL,
+    estado INT NOT NULL,
+    tipo TEXT,
+    cuerpo TEXT NOT NULL,
+    expira TIMESTAMP NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS api_idempotencia_expira_idx ON project.api_idempotencia (expira);
@@ -0,0 +1,12 @@
+-- Lets the API drop its cached copy of project.parametros as soon as it changes
+CREATE OR REPLACE FUNCTION project.notificar_parametros() RETURNS TRIGGER AS $$
+BEGIN
+    PERFORM pg_notify('project_parametros', '');
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS parametros_notify ON project.parametros;
+CREATE TRIGGER parametros_notify
+    AFTER INSERT OR UPDATE OR DELETE OR TRUNCATE ON project.parametros
+    FOR EACH STATEMENT EXECUTE FUNCTION project.notificar_parametros();
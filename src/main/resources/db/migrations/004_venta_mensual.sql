@@ -0,0 +1,15 @@
+-- Sales total of each cashier per month, kept up to date by the API in the same transaction that creates the sale
+CREATE TABLE IF NOT EXISTS project.venta_mensual (
+    rut_vendedor TEXT NOT NULL,
+    mes DATE NOT NULL,
+    total BIGINT NOT NULL,
+    ventas INT NOT NULL,
+    PRIMARY KEY (rut_vendedor, mes)
+);
+
+INSERT INTO project.venta_mensual (rut_vendedor, mes, total, ventas)
+    SELECT S.rut_vendedor, CAST(DATE_TRUNC('month', S.fecha) AS DATE), SUM(C.total), COUNT(*)
+        FROM project.venta AS S
+        INNER JOIN project.comprobante AS C ON C.id = S.id
+        GROUP BY S.rut_vendedor, CAST(DATE_TRUNC('month', S.fecha) AS DATE)
+    ON CONFLICT DO NOTHING;
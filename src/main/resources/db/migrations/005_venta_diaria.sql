@@ -0,0 +1,47 @@
+-- Daily sales of each store by cashier and by product, kept up to date by the API in the same transaction that
+-- creates the sale. Product revenue is recomputed from the recorded sale totals by migration 007.
+CREATE TABLE IF NOT EXISTS project.venta_diaria (
+    id_sucursal INT NOT NULL,
+    dia DATE NOT NULL,
+    rut_vendedor TEXT NOT NULL,
+    ventas INT NOT NULL,
+    unidades BIGINT NOT NULL,
+    total BIGINT NOT NULL,
+    PRIMARY KEY (id_sucursal, dia, rut_vendedor)
+);
+
+CREATE TABLE IF NOT EXISTS project.venta_diaria_producto (
+    id_sucursal INT NOT NULL,
+    dia DATE NOT NULL,
+    sku_producto BIGINT NOT NULL,
+    ventas INT NOT NULL,
+    unidades BIGINT NOT NULL,
+    total BIGINT NOT NULL,
+    PRIMARY KEY (id_sucursal, dia, sku_producto)
+);
+
+INSERT INTO project.venta_diaria (id_sucursal, dia, rut_vendedor, ventas, unidades, total)
+    SELECT V.id_sucursal, CAST(S.fecha AS DATE), S.rut_vendedor, COUNT(*), SUM(U.unidades), SUM(C.total)
+        FROM project.venta AS S
+        INNER JOIN project.vendedor AS V ON V.rut = S.rut_vendedor
+        INNER JOIN project.comprobante AS C ON C.id = S.id
+        INNER JOIN (
+            SELECT id_venta, SUM(cantidad) AS unidades FROM project.ventadeproducto GROUP BY id_venta
+        ) AS U ON U.id_venta = S.id
+        GROUP BY V.id_sucursal, CAST(S.fecha AS DATE), S.rut_vendedor
+    ON CONFLICT DO NOTHING;
+
+INSERT INTO project.venta_diaria_producto (id_sucursal, dia, sku_producto, ventas, unidades, total)
+    SELECT
+        V.id_sucursal,
+        CAST(S.fecha AS DATE),
+        VP.sku_producto,
+        COUNT(DISTINCT S.id),
+        SUM(VP.cantidad),
+        SUM(VP.cantidad * project.aplicar_iva(P.precio_sin_iva))
+        FROM project.venta AS S
+        INNER JOIN project.vendedor AS V ON V.rut = S.rut_vendedor
+        INNER JOIN project.ventadeproducto AS VP ON VP.id_venta = S.id
+        INNER JOIN project.producto AS P ON P.sku = VP.sku_producto
+        GROUP BY V.id_sucursal, CAST(S.fecha AS DATE), VP.sku_producto
+    ON CONFLICT DO NOTHING;
@@ -0,0 +1,15 @@
+-- Managers and cashiers as a single directory. UNION ALL lets the planner push a filter on rut into both branches,
+-- so a lookup is one primary key probe per table instead of deduplicating both of them first. A rut is only ever
+-- in one of the tables, the API checks both before creating an employee.
+CREATE OR REPLACE VIEW project.empleado AS
+    SELECT 'manager' AS tipo, rut, id_sucursal, email, telefono, contraseña, salt, FALSE AS despedido
+        FROM project.gerente
+    UNION ALL
+    SELECT 'cashier' AS tipo, rut, id_sucursal, email, telefono, contraseña, salt, despedido
+        FROM project.vendedor;
+
+-- Registering an employee checks that the email and phone are not taken in either table
+CREATE INDEX IF NOT EXISTS gerente_email_idx ON project.gerente (email);
+CREATE INDEX IF NOT EXISTS gerente_telefono_idx ON project.gerente (telefono);
+CREATE INDEX IF NOT EXISTS vendedor_email_idx ON project.vendedor (email);
+CREATE INDEX IF NOT EXISTS vendedor_telefono_idx ON project.vendedor (telefono);
@@ -0,0 +1,34 @@
+-- Product revenue used to be the line quantity at the product's current price, which drifts away from the recorded
+-- sale totals as soon as a price changes. Lines carry no price of their own, so each sale's recorded total is split
+-- over its lines by list price, with cumulative shares so the lines of a sale add up to exactly its total. The API
+-- keeps the table up to date with the same split.
+TRUNCATE project.venta_diaria_producto;
+
+INSERT INTO project.venta_diaria_producto (id_sucursal, dia, sku_producto, ventas, unidades, total)
+    SELECT L.id_sucursal, L.dia, L.sku_producto, COUNT(DISTINCT L.id_venta), SUM(L.cantidad), SUM(
+        FLOOR(L.total * L.peso_acumulado / L.peso_venta)
+        - FLOOR(L.total * (L.peso_acumulado - L.peso) / L.peso_venta)
+    )
+        FROM (
+            SELECT
+                V.id_sucursal,
+                CAST(S.fecha AS DATE) AS dia,
+                VP.id_venta,
+                VP.sku_producto,
+                VP.cantidad,
+                C.total,
+                W.peso,
+                SUM(W.peso) OVER (
+                    PARTITION BY VP.id_venta ORDER BY VP.sku_producto ROWS UNBOUNDED PRECEDING
+                ) AS peso_acumulado,
+                SUM(W.peso) OVER (PARTITION BY VP.id_venta) AS peso_venta
+                FROM project.venta AS S
+                INNER JOIN project.vendedor AS V ON V.rut = S.rut_vendedor
+                INNER JOIN project.comprobante AS C ON C.id = S.id
+                INNER JOIN project.ventadeproducto AS VP ON VP.id_venta = S.id
+                INNER JOIN project.producto AS P ON P.sku = VP.sku_producto
+                CROSS JOIN LATERAL (
+                    SELECT VP.cantidad * CAST(GREATEST(P.precio_sin_iva, 1) AS NUMERIC) AS peso
+                ) AS W
+        ) AS L
+        GROUP BY L.id_sucursal, L.dia, L.sku_producto;